@@ -0,0 +1,85 @@
+package sg.edu.nus.comp.codis;
+
+/**
+ * Arithmetic on values encoded as longs, shared by {@link Interpreter}, {@link BatchEvaluator},
+ * {@link BVKernels} and {@link ProgramCompiler}. Bit-vectors are unsigned values of the given width and
+ * follow SMT-LIB semantics, including division by zero and shifts beyond the width.
+ */
+final class Arithmetic {
+
+    private Arithmetic() {
+    }
+
+    static long mask(int width) {
+        return width == 64 ? -1L : (1L << width) - 1;
+    }
+
+    static long signed(long value, int width) {
+        return (value << (64 - width)) >> (64 - width);
+    }
+
+    /**
+     * Integer division with a non-negative remainder as in SMT-LIB, the divisor must be non-zero
+     */
+    static long div(long a, long b) {
+        return b > 0 ? Math.floorDiv(a, b) : -Math.floorDiv(a, -b);
+    }
+
+    static long udiv(long a, long b, int width) {
+        return b == 0 ? mask(width) : Long.divideUnsigned(a, b);
+    }
+
+    static long urem(long a, long b) {
+        return b == 0 ? a : Long.remainderUnsigned(a, b);
+    }
+
+    static long sdiv(long a, long b, int width) {
+        long m = mask(width);
+        boolean negA = signed(a, width) < 0;
+        boolean negB = signed(b, width) < 0;
+        long absA = negA ? -a & m : a;
+        long absB = negB ? -b & m : b;
+        long q = udiv(absA, absB, width);
+        return negA != negB ? -q & m : q;
+    }
+
+    static long srem(long a, long b, int width) {
+        long m = mask(width);
+        boolean negA = signed(a, width) < 0;
+        boolean negB = signed(b, width) < 0;
+        long r = urem(negA ? -a & m : a, negB ? -b & m : b);
+        return negA ? -r & m : r;
+    }
+
+    static long smod(long a, long b, int width) {
+        long m = mask(width);
+        boolean negA = signed(a, width) < 0;
+        boolean negB = signed(b, width) < 0;
+        long u = urem(negA ? -a & m : a, negB ? -b & m : b);
+        if (u == 0 || (!negA && !negB)) {
+            return u;
+        } else if (negA && !negB) {
+            return (-u + b) & m;
+        } else if (!negA) {
+            return (u + b) & m;
+        } else {
+            return -u & m;
+        }
+    }
+
+    static long shl(long a, long b, int width) {
+        return Long.compareUnsigned(b, width) >= 0 ? 0 : (a << b) & mask(width);
+    }
+
+    static long lshr(long a, long b, int width) {
+        return Long.compareUnsigned(b, width) >= 0 ? 0 : a >>> b;
+    }
+
+    static long ashr(long a, long b, int width) {
+        long value = signed(a, width);
+        if (Long.compareUnsigned(b, width) >= 0) {
+            return value < 0 ? mask(width) : 0;
+        }
+        return (value >> b) & mask(width);
+    }
+}
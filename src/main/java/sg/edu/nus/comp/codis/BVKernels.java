@@ -0,0 +1,123 @@
+package sg.edu.nus.comp.codis;
+
+/**
+ * Bit-vector operators over columns of unsigned values, one element per test. The loops are kept free of
+ * allocation and only call the small {@link Arithmetic} helpers, which the JIT inlines, so that it can unroll
+ * and vectorize them.
+ */
+public class BVKernels {
+
+    public static void add(long[] a, long[] b, long[] out, int width) {
+        long mask = Arithmetic.mask(width);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (a[i] + b[i]) & mask;
+        }
+    }
+
+    public static void sub(long[] a, long[] b, long[] out, int width) {
+        long mask = Arithmetic.mask(width);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (a[i] - b[i]) & mask;
+        }
+    }
+
+    public static void mul(long[] a, long[] b, long[] out, int width) {
+        long mask = Arithmetic.mask(width);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (a[i] * b[i]) & mask;
+        }
+    }
+
+    public static void and(long[] a, long[] b, long[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = a[i] & b[i];
+        }
+    }
+
+    public static void or(long[] a, long[] b, long[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = a[i] | b[i];
+        }
+    }
+
+    public static void xor(long[] a, long[] b, long[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = a[i] ^ b[i];
+        }
+    }
+
+    public static void not(long[] a, long[] out, int width) {
+        long mask = Arithmetic.mask(width);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = ~a[i] & mask;
+        }
+    }
+
+    public static void neg(long[] a, long[] out, int width) {
+        long mask = Arithmetic.mask(width);
+        for (int i = 0; i < out.length; i++) {
+            out[i] = -a[i] & mask;
+        }
+    }
+
+    /**
+     * Shifts by the width or more give 0
+     */
+    public static void shl(long[] a, long[] b, long[] out, int width) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = Arithmetic.shl(a[i], b[i], width);
+        }
+    }
+
+    public static void lshr(long[] a, long[] b, long[] out, int width) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = Arithmetic.lshr(a[i], b[i], width);
+        }
+    }
+
+    /**
+     * Shifts by the width or more fill the result with the sign bit
+     */
+    public static void ashr(long[] a, long[] b, long[] out, int width) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = Arithmetic.ashr(a[i], b[i], width);
+        }
+    }
+
+    public static void eq(long[] a, long[] b, boolean[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = a[i] == b[i];
+        }
+    }
+
+    public static void ult(long[] a, long[] b, boolean[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = a[i] + Long.MIN_VALUE < b[i] + Long.MIN_VALUE;
+        }
+    }
+
+    public static void ule(long[] a, long[] b, boolean[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = a[i] + Long.MIN_VALUE <= b[i] + Long.MIN_VALUE;
+        }
+    }
+
+    public static void slt(long[] a, long[] b, boolean[] out, int width) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = Arithmetic.signed(a[i], width) < Arithmetic.signed(b[i], width);
+        }
+    }
+
+    public static void sle(long[] a, long[] b, boolean[] out, int width) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = Arithmetic.signed(a[i], width) <= Arithmetic.signed(b[i], width);
+        }
+    }
+
+    public static void ite(boolean[] condition, long[] a, long[] b, long[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = condition[i] ? a[i] : b[i];
+        }
+    }
+
+}
@@ -0,0 +1,844 @@
+package sg.edu.nus.comp.codis;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+
+/**
+ * Runs a program on a whole {@link TestStore} at once, computing a column of values for each node of its
+ * semantics. Tests that cannot be evaluated this way (symbolic tests, unassigned inputs, integer overflow or
+ * division by zero) are checked one by one with the {@link Tester}.
+ *
+ * Columns of subprograms are memoized, so after a leaf substitution only the path from the leaf to the root
+ * is recomputed.
+ */
+public class BatchEvaluator {
+
+    private static final int INT = -1;
+    private static final int BOOL = 0;
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private TestStore store;
+
+    private Tester tester;
+
+    private int capacity;
+
+    // subprogram with valuation of its parameters
+    private LinkedHashMap<Pair<Program, Map<Parameter, Constant>>, Column> columns;
+
+    // parameters of memoized subprograms, bounded like the columns
+    private LinkedHashMap<Program, Set<Parameter>> parameters;
+
+    private ParallelTester parallelTester;
+
+    public BatchEvaluator(TestStore store, Tester tester, int capacity) {
+        this.store = store;
+        this.tester = tester;
+        this.capacity = capacity;
+        this.columns = new LinkedHashMap<Pair<Program, Map<Parameter, Constant>>, Column>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Pair<Program, Map<Parameter, Constant>>, Column> eldest) {
+                return size() > BatchEvaluator.this.capacity;
+            }
+        };
+        this.parameters = new LinkedHashMap<Program, Set<Parameter>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Program, Set<Parameter>> eldest) {
+                return size() > BatchEvaluator.this.capacity;
+            }
+        };
+    }
+
+    public BatchEvaluator(TestStore store, Tester tester) {
+        this(store, tester, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Tests that cannot be evaluated column-wise are checked in parallel
+     */
+    public void setParallelTester(ParallelTester parallelTester) {
+        this.parallelTester = parallelTester;
+    }
+
+    public int getMemoizedCount() {
+        return columns.size();
+    }
+
+    public TestStore getStore() {
+        return store;
+    }
+
+    /**
+     * Tests undecided within the limits count as failing
+     */
+    public BitSet getFailing(Program program, Map<Parameter, Constant> parameterValuation) {
+        return getFailing(program, parameterValuation, new BitSet());
+    }
+
+    /**
+     * @param undecided receives failing tests that the solver could not decide within the limits
+     */
+    public BitSet getFailing(Program program, Map<Parameter, Constant> parameterValuation, BitSet undecided) {
+        BitSet failing = new BitSet(store.size());
+        BitSet fallback = evaluate(program, parameterValuation, failing);
+        test(program, parameterValuation, fallback, failing, undecided, false);
+        return failing;
+    }
+
+    /**
+     * Looks for one failing test among the candidates, stopping as soon as it is found.
+     *
+     * @param undecided receives tests that the solver could not decide within the limits
+     * @return index of a test that is decided to fail
+     */
+    public Optional<Integer> findFailing(Program program,
+                                         Map<Parameter, Constant> parameterValuation,
+                                         BitSet candidates,
+                                         BitSet undecided) {
+        BitSet failing = new BitSet(store.size());
+        BitSet fallback = evaluate(program, parameterValuation, failing);
+        failing.and(candidates);
+        if (failing.isEmpty()) {
+            fallback.and(candidates);
+            test(program, parameterValuation, fallback, failing, undecided, true);
+            failing.andNot(undecided);
+        }
+        if (failing.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(failing.nextSetBit(0));
+    }
+
+    /**
+     * @return hash of the program's outputs on all tests, or empty if some of them cannot be evaluated
+     * column-wise
+     */
+    public Optional<Long> getFingerprint(Program program, Map<Parameter, Constant> parameterValuation) {
+        Optional<Column> column = getDefinedColumn(program, parameterValuation);
+        if (!column.isPresent()) {
+            return Optional.empty();
+        }
+        long hash = column.get().kind;
+        if (column.get().values instanceof long[]) {
+            for (long value : (long[]) column.get().values) {
+                hash = mix(hash ^ value);
+            }
+        } else {
+            for (boolean value : (boolean[]) column.get().values) {
+                hash = mix(hash ^ (value ? 1 : 0));
+            }
+        }
+        return Optional.of(hash);
+    }
+
+    /**
+     * @return program's outputs on all tests, long[] for integers and bit-vectors and boolean[] for booleans,
+     * or empty if some of them cannot be evaluated column-wise. The array must not be modified.
+     */
+    public Optional<Object> getOutputs(Program program, Map<Parameter, Constant> parameterValuation) {
+        return getDefinedColumn(program, parameterValuation).map(column -> column.values);
+    }
+
+    private Optional<Column> getDefinedColumn(Program program, Map<Parameter, Constant> parameterValuation) {
+        if (!store.getSymbolic().isEmpty()) {
+            return Optional.empty();
+        }
+        Column column;
+        try {
+            column = evaluate(program, parameterValuation);
+        } catch (NotBatchableException e) {
+            return Optional.empty();
+        }
+        if (!column.undefined.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(column);
+    }
+
+    private static long mix(long hash) {
+        hash *= 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 32);
+    }
+
+    /**
+     * Computes failing tests column-wise
+     *
+     * @return tests that have to be checked individually
+     */
+    private BitSet evaluate(Program program, Map<Parameter, Constant> parameterValuation, BitSet failing) {
+        BitSet fallback = (BitSet) store.getSymbolic().clone();
+        try {
+            Column column = evaluate(program, parameterValuation);
+            fallback.or(column.undefined);
+            compare(column.values, store.getOutputs(), fallback, failing);
+        } catch (NotBatchableException e) {
+            fallback.set(0, store.size());
+        }
+        return fallback;
+    }
+
+    private void test(Program program,
+                      Map<Parameter, Constant> parameterValuation,
+                      BitSet tests,
+                      BitSet failing,
+                      BitSet undecided,
+                      boolean firstOnly) {
+        if (tests.isEmpty()) {
+            return;
+        }
+        if (parallelTester != null) {
+            parallelTester.test(program, parameterValuation, store.getTests(), tests.stream().toArray(),
+                                failing, undecided, firstOnly);
+            return;
+        }
+        for (int i = tests.nextSetBit(0); i >= 0; i = tests.nextSetBit(i + 1)) {
+            Optional<Boolean> passing = tester.test(program, parameterValuation, store.getTest(i));
+            if (!passing.isPresent()) {
+                undecided.set(i);
+                failing.set(i);
+            } else if (!passing.get()) {
+                failing.set(i);
+                if (firstOnly) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class Column {
+        private Object values;
+        private int kind;
+        private BitSet undefined;
+
+        Column(Object values, int kind, BitSet undefined) {
+            this.values = values;
+            this.kind = kind;
+            this.undefined = undefined;
+        }
+    }
+
+    private Set<Parameter> getParameters(Program program) {
+        Set<Parameter> result = parameters.get(program);
+        if (result == null) {
+            result = new HashSet<>();
+            for (Component component : program.getComponents()) {
+                result.addAll(Traverse.collectByType(component.getSemantics(), Parameter.class));
+            }
+            parameters.put(program, result);
+        }
+        return result;
+    }
+
+    private Column evaluate(Program program, Map<Parameter, Constant> parameterValuation) {
+        Map<Parameter, Constant> valuation = new HashMap<>();
+        for (Parameter parameter : getParameters(program)) {
+            if (parameterValuation.containsKey(parameter)) {
+                valuation.put(parameter, parameterValuation.get(parameter));
+            }
+        }
+        Pair<Program, Map<Parameter, Constant>> key = new ImmutablePair<>(program, valuation);
+        Column column = columns.get(key);
+        if (column != null) {
+            return column;
+        }
+        Map<Hole, Column> arguments = new HashMap<>();
+        for (Map.Entry<Hole, Program> entry : program.getChildren().entrySet()) {
+            arguments.put(entry.getKey(), evaluate(entry.getValue(), parameterValuation));
+        }
+        ColumnVisitor visitor = new ColumnVisitor(store.size(), arguments, valuation);
+        program.getRoot().getSemantics().accept(visitor);
+        column = visitor.getResult();
+        columns.put(key, column);
+        return column;
+    }
+
+    private static void compare(Object actual, Object expected, BitSet fallback, BitSet failing) {
+        if (actual instanceof long[] && expected instanceof long[]) {
+            long[] a = (long[]) actual;
+            long[] e = (long[]) expected;
+            for (int i = 0; i < a.length; i++) {
+                if (a[i] != e[i] && !fallback.get(i)) {
+                    failing.set(i);
+                }
+            }
+        } else if (actual instanceof boolean[] && expected instanceof boolean[]) {
+            boolean[] a = (boolean[]) actual;
+            boolean[] e = (boolean[]) expected;
+            for (int i = 0; i < a.length; i++) {
+                if (a[i] != e[i] && !fallback.get(i)) {
+                    failing.set(i);
+                }
+            }
+        } else {
+            throw NOT_BATCHABLE;
+        }
+    }
+
+    private static class NotBatchableException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static final NotBatchableException NOT_BATCHABLE = new NotBatchableException();
+
+    private interface BVOperator {
+        long apply(long left, long right, int width);
+    }
+
+    private interface LongPredicate {
+        boolean test(long left, long right);
+    }
+
+    private interface BoolOperator {
+        boolean apply(boolean left, boolean right);
+    }
+
+    private interface Kernel {
+        void apply(long[] left, long[] right, long[] out, int width);
+    }
+
+    private interface Comparison {
+        void apply(long[] left, long[] right, boolean[] out, int width);
+    }
+
+    /**
+     * Columns are long[] for integers and bit-vectors, boolean[] for booleans. Their kinds are INT, BOOL
+     * or bit-vector width.
+     */
+    private class ColumnVisitor implements BottomUpVisitor {
+
+        private int size;
+
+        private ArrayList<Object> columns;
+        private ArrayList<Integer> kinds;
+
+        private BitSet undefined;
+
+        private Map<Hole, Column> arguments;
+
+        private Map<Parameter, Constant> valuation;
+
+        ColumnVisitor(int size, Map<Hole, Column> arguments, Map<Parameter, Constant> valuation) {
+            this.size = size;
+            this.columns = new ArrayList<>();
+            this.kinds = new ArrayList<>();
+            this.undefined = new BitSet(size);
+            for (Column argument : arguments.values()) {
+                undefined.or(argument.undefined);
+            }
+            this.arguments = arguments;
+            this.valuation = valuation;
+        }
+
+        Column getResult() {
+            assert columns.size() == 1;
+            return new Column(columns.get(0), kinds.get(0), undefined);
+        }
+
+        private void push(Object column, int kind) {
+            columns.add(column);
+            kinds.add(kind);
+        }
+
+        private int topKind() {
+            return kinds.get(kinds.size() - 1);
+        }
+
+        private long[] popLong() {
+            kinds.remove(kinds.size() - 1);
+            return (long[]) columns.remove(columns.size() - 1);
+        }
+
+        private boolean[] popBool() {
+            kinds.remove(kinds.size() - 1);
+            return (boolean[]) columns.remove(columns.size() - 1);
+        }
+
+        private void processVariable(Variable variable) {
+            if (!(variable instanceof ProgramVariable)) {
+                throw NOT_BATCHABLE;
+            }
+            Object column = store.getColumn((ProgramVariable) variable);
+            if (column == null) {
+                throw NOT_BATCHABLE;
+            }
+            BitSet missing = (BitSet) store.getDefined((ProgramVariable) variable).clone();
+            missing.flip(0, size);
+            undefined.or(missing);
+            Type type = variable.getType();
+            if (type.equals(BoolType.TYPE)) {
+                push(column, BOOL);
+            } else if (type.equals(IntType.TYPE)) {
+                push(column, INT);
+            } else if (type instanceof BVType) {
+                push(column, ((BVType) type).getSize());
+            } else {
+                throw NOT_BATCHABLE;
+            }
+        }
+
+        private void bvBinary(BVOperator operator) {
+            int width = topKind();
+            long[] right = popLong();
+            long[] left = popLong();
+            long[] result = new long[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = operator.apply(left[i], right[i], width);
+            }
+            push(result, width);
+        }
+
+        private void kernel(Kernel kernel) {
+            int width = topKind();
+            long[] right = popLong();
+            long[] left = popLong();
+            long[] result = new long[size];
+            kernel.apply(left, right, result, width);
+            push(result, width);
+        }
+
+        private void comparison(Comparison comparison) {
+            int width = topKind();
+            long[] right = popLong();
+            long[] left = popLong();
+            boolean[] result = new boolean[size];
+            comparison.apply(left, right, result, width);
+            push(result, BOOL);
+        }
+
+        private void intCompare(LongPredicate predicate) {
+            long[] right = popLong();
+            long[] left = popLong();
+            boolean[] result = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = predicate.test(left[i], right[i]);
+            }
+            push(result, BOOL);
+        }
+
+        private void boolBinary(BoolOperator operator) {
+            boolean[] right = popBool();
+            boolean[] left = popBool();
+            boolean[] result = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = operator.apply(left[i], right[i]);
+            }
+            push(result, BOOL);
+        }
+
+        private void pushConstant(long value, int kind) {
+            long[] column = new long[size];
+            Arrays.fill(column, value);
+            push(column, kind);
+        }
+
+        @Override
+        public void visit(ProgramVariable programVariable) {
+            processVariable(programVariable);
+        }
+
+        @Override
+        public void visit(Location location) {
+            throw NOT_BATCHABLE;
+        }
+
+        @Override
+        public void visit(UIFApplication UIFApplication) {
+            throw NOT_BATCHABLE;
+        }
+
+        @Override
+        public void visit(Equal equal) {
+            if (topKind() == BOOL) {
+                boolBinary((l, r) -> l == r);
+            } else {
+                comparison((l, r, out, width) -> BVKernels.eq(l, r, out));
+            }
+        }
+
+        @Override
+        public void visit(Add add) {
+            long[] right = popLong();
+            long[] left = popLong();
+            long[] result = new long[size];
+            for (int i = 0; i < size; i++) {
+                long r = left[i] + right[i];
+                if (((left[i] ^ r) & (right[i] ^ r)) < 0) {
+                    undefined.set(i);
+                }
+                result[i] = r;
+            }
+            push(result, INT);
+        }
+
+        @Override
+        public void visit(Sub sub) {
+            long[] right = popLong();
+            long[] left = popLong();
+            long[] result = new long[size];
+            for (int i = 0; i < size; i++) {
+                long r = left[i] - right[i];
+                if (((left[i] ^ right[i]) & (left[i] ^ r)) < 0) {
+                    undefined.set(i);
+                }
+                result[i] = r;
+            }
+            push(result, INT);
+        }
+
+        @Override
+        public void visit(Mult mult) {
+            long[] right = popLong();
+            long[] left = popLong();
+            long[] result = new long[size];
+            for (int i = 0; i < size; i++) {
+                try {
+                    result[i] = Math.multiplyExact(left[i], right[i]);
+                } catch (ArithmeticException e) {
+                    undefined.set(i);
+                }
+            }
+            push(result, INT);
+        }
+
+        @Override
+        public void visit(Div div) {
+            long[] right = popLong();
+            long[] left = popLong();
+            long[] result = new long[size];
+            for (int i = 0; i < size; i++) {
+                long l = left[i];
+                long r = right[i];
+                if (r == 0 || (l == Long.MIN_VALUE && r == -1)) {
+                    undefined.set(i);
+                } else {
+                    result[i] = Arithmetic.div(l, r);
+                }
+            }
+            push(result, INT);
+        }
+
+        @Override
+        public void visit(And and) {
+            boolBinary((l, r) -> l && r);
+        }
+
+        @Override
+        public void visit(Or or) {
+            boolBinary((l, r) -> l || r);
+        }
+
+        @Override
+        public void visit(Iff iff) {
+            boolBinary((l, r) -> l == r);
+        }
+
+        @Override
+        public void visit(Impl impl) {
+            boolBinary((l, r) -> !l || r);
+        }
+
+        @Override
+        public void visit(Greater greater) {
+            intCompare((l, r) -> l > r);
+        }
+
+        @Override
+        public void visit(Less less) {
+            intCompare((l, r) -> l < r);
+        }
+
+        @Override
+        public void visit(GreaterOrEqual greaterOrEqual) {
+            intCompare((l, r) -> l >= r);
+        }
+
+        @Override
+        public void visit(LessOrEqual lessOrEqual) {
+            intCompare((l, r) -> l <= r);
+        }
+
+        @Override
+        public void visit(Minus minus) {
+            long[] arg = popLong();
+            long[] result = new long[size];
+            for (int i = 0; i < size; i++) {
+                if (arg[i] == Long.MIN_VALUE) {
+                    undefined.set(i);
+                }
+                result[i] = -arg[i];
+            }
+            push(result, INT);
+        }
+
+        @Override
+        public void visit(Not not) {
+            boolean[] arg = popBool();
+            boolean[] result = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = !arg[i];
+            }
+            push(result, BOOL);
+        }
+
+        @Override
+        public void visit(IntConst intConst) {
+            pushConstant(intConst.getValue(), INT);
+        }
+
+        @Override
+        public void visit(BoolConst boolConst) {
+            boolean[] column = new boolean[size];
+            Arrays.fill(column, boolConst.getValue());
+            push(column, BOOL);
+        }
+
+        @Override
+        public void visit(ComponentInput componentInput) {
+            throw NOT_BATCHABLE;
+        }
+
+        @Override
+        public void visit(ComponentOutput componentOutput) {
+            throw NOT_BATCHABLE;
+        }
+
+        @Override
+        public void visit(TestInstance testInstance) {
+            throw NOT_BATCHABLE;
+        }
+
+        @Override
+        public void visit(Parameter parameter) {
+            Constant value = valuation.get(parameter);
+            if (value == null) {
+                throw NOT_BATCHABLE;
+            }
+            if (value instanceof BoolConst) {
+                boolean[] column = new boolean[size];
+                Arrays.fill(column, ((BoolConst) value).getValue());
+                push(column, BOOL);
+            } else if (value instanceof IntConst) {
+                pushConstant(((IntConst) value).getValue(), INT);
+            } else if (value instanceof BVConst) {
+                int width = ((BVConst) value).getType().getSize();
+                pushConstant(((BVConst) value).getLong() & Arithmetic.mask(width), width);
+            } else {
+                throw NOT_BATCHABLE;
+            }
+        }
+
+        @Override
+        public void visit(Hole hole) {
+            Column argument = arguments.get(hole);
+            if (argument == null) {
+                throw NOT_BATCHABLE;
+            }
+            push(argument.values, argument.kind);
+        }
+
+        @Override
+        public void visit(ITE ite) {
+            int kind = topKind();
+            if (kind == BOOL) {
+                boolean[] elseBranch = popBool();
+                boolean[] thenBranch = popBool();
+                boolean[] condition = popBool();
+                boolean[] result = new boolean[size];
+                for (int i = 0; i < size; i++) {
+                    result[i] = condition[i] ? thenBranch[i] : elseBranch[i];
+                }
+                push(result, kind);
+            } else {
+                long[] elseBranch = popLong();
+                long[] thenBranch = popLong();
+                boolean[] condition = popBool();
+                long[] result = new long[size];
+                BVKernels.ite(condition, thenBranch, elseBranch, result);
+                push(result, kind);
+            }
+        }
+
+        @Override
+        public void visit(Selector selector) {
+            throw NOT_BATCHABLE;
+        }
+
+        @Override
+        public void visit(BVConst bvConst) {
+            int width = bvConst.getType().getSize();
+            pushConstant(bvConst.getLong() & Arithmetic.mask(width), width);
+        }
+
+        @Override
+        public void visit(BVAdd bvAdd) {
+            kernel(BVKernels::add);
+        }
+
+        @Override
+        public void visit(BVAnd bvAnd) {
+            kernel((l, r, out, width) -> BVKernels.and(l, r, out));
+        }
+
+        @Override
+        public void visit(BVMult bvMult) {
+            kernel(BVKernels::mul);
+        }
+
+        @Override
+        public void visit(BVNeg bvNeg) {
+            int width = topKind();
+            long[] result = new long[size];
+            BVKernels.neg(popLong(), result, width);
+            push(result, width);
+        }
+
+        @Override
+        public void visit(BVNot bvNot) {
+            int width = topKind();
+            long[] result = new long[size];
+            BVKernels.not(popLong(), result, width);
+            push(result, width);
+        }
+
+        @Override
+        public void visit(BVOr bvOr) {
+            kernel((l, r, out, width) -> BVKernels.or(l, r, out));
+        }
+
+        @Override
+        public void visit(BVShiftLeft bvShiftLeft) {
+            kernel(BVKernels::shl);
+        }
+
+        @Override
+        public void visit(BVSignedDiv bvSignedDiv) {
+            bvBinary(Arithmetic::sdiv);
+        }
+
+        @Override
+        public void visit(BVSignedGreater bvSignedGreater) {
+            comparison((l, r, out, width) -> BVKernels.slt(r, l, out, width));
+        }
+
+        @Override
+        public void visit(BVSignedGreaterOrEqual bvSignedGreaterOrEqual) {
+            comparison((l, r, out, width) -> BVKernels.sle(r, l, out, width));
+        }
+
+        @Override
+        public void visit(BVSignedLess bvSignedLess) {
+            comparison(BVKernels::slt);
+        }
+
+        @Override
+        public void visit(BVSignedLessOrEqual bvSignedLessOrEqual) {
+            comparison(BVKernels::sle);
+        }
+
+        @Override
+        public void visit(BVSignedModulo bvSignedModulo) {
+            bvBinary(Arithmetic::smod);
+        }
+
+        @Override
+        public void visit(BVSignedRemainder bvSignedRemainder) {
+            bvBinary(Arithmetic::srem);
+        }
+
+        @Override
+        public void visit(BVSignedShiftRight bvSignedShiftRight) {
+            kernel(BVKernels::ashr);
+        }
+
+        @Override
+        public void visit(BVSub bvSub) {
+            kernel(BVKernels::sub);
+        }
+
+        @Override
+        public void visit(BVUnsignedDiv bvUnsignedDiv) {
+            bvBinary(Arithmetic::udiv);
+        }
+
+        @Override
+        public void visit(BVUnsignedGreater bvUnsignedGreater) {
+            comparison((l, r, out, width) -> BVKernels.ult(r, l, out));
+        }
+
+        @Override
+        public void visit(BVUnsignedGreaterOrEqual bvUnsignedGreaterOrEqual) {
+            comparison((l, r, out, width) -> BVKernels.ule(r, l, out));
+        }
+
+        @Override
+        public void visit(BVUnsignedLess bvUnsignedLess) {
+            comparison((l, r, out, width) -> BVKernels.ult(l, r, out));
+        }
+
+        @Override
+        public void visit(BVUnsignedLessOrEqual bvUnsignedLessOrEqual) {
+            comparison((l, r, out, width) -> BVKernels.ule(l, r, out));
+        }
+
+        @Override
+        public void visit(BVUnsignedRemainder bvUnsignedRemainder) {
+            bvBinary((l, r, width) -> Arithmetic.urem(l, r));
+        }
+
+        @Override
+        public void visit(BVUnsignedShiftRight bvUnsignedShiftRight) {
+            kernel(BVKernels::lshr);
+        }
+
+        @Override
+        public void visit(BranchOutput branchOutput) {
+            throw NOT_BATCHABLE;
+        }
+
+        @Override
+        public void visit(BVNand bvNand) {
+            bvBinary((l, r, width) -> ~(l & r) & Arithmetic.mask(width));
+        }
+
+        @Override
+        public void visit(BVXor bvXor) {
+            kernel((l, r, out, width) -> BVKernels.xor(l, r, out));
+        }
+
+        @Override
+        public void visit(BVNor bvNor) {
+            bvBinary((l, r, width) -> ~(l | r) & Arithmetic.mask(width));
+        }
+
+        @Override
+        public void visit(BVXnor bvXnor) {
+            bvBinary((l, r, width) -> ~(l ^ r) & Arithmetic.mask(width));
+        }
+
+        @Override
+        public void visit(ProgramOutput programOutput) {
+            throw NOT_BATCHABLE;
+        }
+
+        @Override
+        public void visit(Dummy dummy) {
+            throw NOT_BATCHABLE;
+        }
+
+        @Override
+        public void visit(Indexed indexed) {
+            throw NOT_BATCHABLE;
+        }
+    }
+
+}
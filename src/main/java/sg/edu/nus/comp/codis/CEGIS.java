@@ -19,14 +19,51 @@ public class CEGIS implements Synthesis {
 
     private Logger logger = LoggerFactory.getLogger(CEGIS.class);
 
+    private ParallelTester parallelTester;
+
+    private boolean reportScore = false;
+
     public CEGIS(Synthesis synthesizer, Solver solver) {
         this.synthesizer = synthesizer;
         this.tester = new Tester(solver);
     }
 
+    @Override
+    public void setLimits(SolverLimits limits) {
+        this.tester.setLimits(limits);
+        this.synthesizer.setLimits(limits);
+        if (parallelTester != null) {
+            parallelTester.setLimits(limits);
+        }
+    }
+
+    /**
+     * Tests that cannot be evaluated column-wise are checked in parallel
+     */
+    public void setParallelTester(ParallelTester parallelTester) {
+        this.parallelTester = parallelTester;
+    }
+
+    /**
+     * Check all remaining tests to log the score of each candidate, instead of stopping at the first counterexample
+     */
+    public void setReportScore(boolean reportScore) {
+        this.reportScore = reportScore;
+    }
+
     @Override
     public Optional<Pair<Program, Map<Parameter, Constant>>> synthesize(List<TestCase> testSuite,
                                                                         Multiset<Node> components) {
+        try {
+            return search(testSuite, components);
+        } finally {
+            tester.dispose();
+            synthesizer.dispose();
+        }
+    }
+
+    private Optional<Pair<Program, Map<Parameter, Constant>>> search(List<TestCase> testSuite,
+                                                                     Multiset<Node> components) {
         assert testSuite.size() > 0;
 
         Set<TestCase> remaining = new HashSet<>(testSuite);
@@ -36,6 +73,9 @@ public class CEGIS implements Synthesis {
 
         Optional<Pair<Program, Map<Parameter, Constant>>> result = Optional.empty();
 
+        BatchEvaluator evaluator = new BatchEvaluator(new TestStore(testSuite), tester);
+        evaluator.setParallelTester(parallelTester);
+
         while(counterExample.isPresent()) {
             current.add(counterExample.get());
             logger.info("Adding test " + counterExample.get());
@@ -53,21 +93,50 @@ public class CEGIS implements Synthesis {
             logger.info("Synthesized program: " + result.get().getLeft().getSemantics(result.get().getRight()));
 
             boolean counterExampleFound = false;
-            int score = current.size();
-            for (TestCase testCase : remaining) {
-                if (!tester.isPassing(result.get().getLeft(), result.get().getRight(), testCase)) {
-                    if (!counterExampleFound) {
-                        counterExample = Optional.of(testCase);
-                        counterExampleFound = true;
+            Optional<TestCase> undecided = Optional.empty();
+            BitSet undecidedIndices = new BitSet();
+            if (reportScore) {
+                int score = current.size();
+                BitSet failingIndices = evaluator.getFailing(result.get().getLeft(), result.get().getRight(), undecidedIndices);
+                for (TestCase testCase : remaining) {
+                    int index = evaluator.getStore().indexOf(testCase);
+                    if (undecidedIndices.get(index)) {
+                        if (!undecided.isPresent()) {
+                            undecided = Optional.of(testCase);
+                        }
+                    } else if (failingIndices.get(index)) {
+                        if (!counterExampleFound) {
+                            counterExample = Optional.of(testCase);
+                            counterExampleFound = true;
+                        }
+                    } else {
+                        score++;
                     }
-                } else {
-                    score++;
                 }
+                logger.info("Score: " + score + "/" + testSuite.size());
+            } else {
+                BitSet candidates = new BitSet();
+                for (TestCase testCase : remaining) {
+                    candidates.set(evaluator.getStore().indexOf(testCase));
+                }
+                Optional<Integer> failing =
+                        evaluator.findFailing(result.get().getLeft(), result.get().getRight(), candidates, undecidedIndices);
+                if (failing.isPresent()) {
+                    counterExample = Optional.of(evaluator.getStore().getTest(failing.get()));
+                    counterExampleFound = true;
+                } else if (!undecidedIndices.isEmpty()) {
+                    undecided = Optional.of(evaluator.getStore().getTest(undecidedIndices.nextSetBit(0)));
+                }
+            }
+            // undecided test is only added when there is no real counterexample
+            if (!counterExampleFound && undecided.isPresent()) {
+                logger.warn("Test undecided within limits: " + undecided.get());
+                counterExample = undecided;
             }
-            logger.info("Score: " + score + "/" + testSuite.size());
         }
 
         logger.info("Succeeded");
+        logger.info("Checks without solver: " + (tester.getChecks() - tester.getSolverChecks()) + "/" + tester.getChecks());
 
         return result;
     }
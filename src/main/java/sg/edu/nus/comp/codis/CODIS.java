@@ -24,6 +24,10 @@ public class CODIS extends SynthesisWithLearning {
     private InterpolatingSolver iSolver;
     private Optional<Integer> totalBound;
 
+    private SolverLimits limits = SolverLimits.NONE;
+
+    private ParallelTester parallelTester;
+
     private Map<Multiset<Node>, Node> conflicts;
 
     public CODIS(Solver solver, InterpolatingSolver iSolver, int incrementBound, Optional<Integer> totalBound) {
@@ -33,6 +37,25 @@ public class CODIS extends SynthesisWithLearning {
         this.totalBound = totalBound;
     }
 
+    /**
+     * Tests undecided within the limits count as failing, undecided subproblems are skipped
+     */
+    @Override
+    public void setLimits(SolverLimits limits) {
+        this.limits = limits;
+        this.tester.setLimits(limits);
+        if (parallelTester != null) {
+            parallelTester.setLimits(limits);
+        }
+    }
+
+    /**
+     * Tests that cannot be evaluated column-wise are checked in parallel
+     */
+    public void setParallelTester(ParallelTester parallelTester) {
+        this.parallelTester = parallelTester;
+    }
+
     private Multiset<Node> remainingComponents(Multiset<Node> total, Program p) {
         Multiset<Node> result = HashMultiset.create(total);
         removeUsedComponents(result, p);
@@ -161,12 +184,11 @@ public class CODIS extends SynthesisWithLearning {
         }
     }
 
-    private List<TestCase> getFailing(Pair<Program, Map<Parameter, Constant>> p, List<TestCase> t) {
+    private List<TestCase> getFailing(Pair<Program, Map<Parameter, Constant>> p, BatchEvaluator evaluator) {
+        BitSet failingIndices = evaluator.getFailing(p.getLeft(), p.getRight());
         List<TestCase> failing = new ArrayList<>();
-        for (TestCase testCase : t) {
-            if (!tester.isPassing(p.getLeft(), p.getRight(), testCase)) {
-                failing.add(testCase);
-            }
+        for (int i = failingIndices.nextSetBit(0); i >= 0; i = failingIndices.nextSetBit(i + 1)) {
+            failing.add(evaluator.getStore().getTest(i));
         }
         return failing;
     }
@@ -197,26 +219,45 @@ public class CODIS extends SynthesisWithLearning {
     @Override
     public Either<Pair<Program, Map<Parameter, Constant>>, Node> synthesizeOrLearn(List<TestCase> testSuite,
                                                                                    Multiset<Node> components) {
+        try {
+            return search(testSuite, components);
+        } finally {
+            tester.dispose();
+        }
+    }
+
+    private Either<Pair<Program, Map<Parameter, Constant>>, Node> search(List<TestCase> testSuite,
+                                                                         Multiset<Node> components) {
         conflicts = new HashMap<>();
         Stack<SearchTreeNode> synthesisSequence = new Stack<>();
 
-        Set<String> history = new HashSet<>();
+        BatchEvaluator evaluator = new BatchEvaluator(new TestStore(testSuite), tester);
+        evaluator.setParallelTester(parallelTester);
+        SignatureIndex history = new SignatureIndex(evaluator);
+
 
         //FIXME: should start from an empty program, because leaf program is not always possible
 
         TreeBoundedSynthesis initialSynthesizer = new TreeBoundedSynthesis(iSolver, 1, true);
+        initialSynthesizer.setLimits(limits);
         List<TestCase> initialTestSuite = new ArrayList<>();
         initialTestSuite.add(testSuite.get(0));
-        Pair<Program, Map<Parameter, Constant>> initial = initialSynthesizer.synthesize(initialTestSuite, components).get();
+        Optional<Pair<Program, Map<Parameter, Constant>>> initialResult =
+                initialSynthesizer.synthesize(initialTestSuite, components);
+        if (!initialResult.isPresent()) {
+            return Either.right(new Dummy(BoolType.TYPE));
+        }
+        Pair<Program, Map<Parameter, Constant>> initial = initialResult.get();
 
         List<TestCase> fixed = new ArrayList<>();
         fixed.add(testSuite.get(0));
 
-        List<TestCase> failing = getFailing(initial, testSuite);
+        List<TestCase> failing = getFailing(initial, evaluator);
 
         if (failing.isEmpty()) {
             return Either.left(initial);
         }
+        history.add(initial.getLeft(), initial.getRight());
 
         Multiset<Node> remaining = remainingComponents(components, initial.getLeft());
 
@@ -248,6 +289,7 @@ public class CODIS extends SynthesisWithLearning {
             }
 
             TreeBoundedSynthesis synthesizer = new TreeBoundedSynthesis(iSolver, bound, true, current.explored);
+            synthesizer.setLimits(limits);
 
             Either<Pair<Program, Map<Parameter, Constant>>, Node> result =
                     synthesizer.synthesizeOrLearn(contextTestSuite, remainingWithRemovedLeaf);
@@ -274,11 +316,17 @@ public class CODIS extends SynthesisWithLearning {
 
             Pair<Program, Map<Parameter, Constant>> next = new ImmutablePair<>(newProgram, newParameterValuation);
 
-            List<TestCase> newFailing = getFailing(next, testSuite);
+            List<TestCase> newFailing = getFailing(next, evaluator);
             if (newFailing.isEmpty()) {
                 return Either.left(next);
             }
 
+            // observationally equivalent to a program that is already explored
+            if (!history.add(newProgram, newParameterValuation)) {
+                logger.warn("REPETITION");
+                continue;
+            }
+
             Multiset<Node> newComponents = remainingComponents(components, newProgram);
 
             List<Component> newLeaves = newProgram.getLeaves();
@@ -289,13 +337,6 @@ public class CODIS extends SynthesisWithLearning {
 
             logSearchTreeNode(newNode);
 
-            String repr = newNode.program.getLeft().getSemantics(newNode.program.getRight()).toString();
-            if (history.contains(repr)) {
-                logger.warn("REPETITION");
-            } else {
-                history.add(repr);
-            }
-
             synthesisSequence.push(newNode);
         }
 
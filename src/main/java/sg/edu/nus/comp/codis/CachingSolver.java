@@ -0,0 +1,395 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.BVConst;
+import sg.edu.nus.comp.codis.ast.theory.BoolConst;
+import sg.edu.nus.comp.codis.ast.theory.IntConst;
+import sg.edu.nus.comp.codis.ast.theory.UIFApplication;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Memoizes results of another solver. Queries are normalized by sorting and deduplicating clauses and
+ * renaming variables in the order of their occurrence, so alpha-equivalent queries share an entry.
+ * Models are stored over the canonical names, unsat cores as indices of assumptions.
+ */
+public class CachingSolver implements Solver {
+
+    private Logger logger = LoggerFactory.getLogger(CachingSolver.class);
+
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private Solver solver;
+
+    private int capacity;
+
+    private LinkedHashMap<String, CachedResult> entries;
+
+    private Optional<Path> store;
+
+    private long hits;
+    private long misses;
+
+    private static class CachedResult {
+        // canonical variable name to value if SAT, null otherwise
+        private Map<String, Constant> model;
+        // indices of assumptions in the core if UNSAT
+        private List<Integer> core;
+
+        CachedResult(Map<String, Constant> model, List<Integer> core) {
+            this.model = model;
+            this.core = core;
+        }
+    }
+
+    private static class Query {
+        private String key;
+        private VariableMarshaller marshaller;
+
+        Query(String key, VariableMarshaller marshaller) {
+            this.key = key;
+            this.marshaller = marshaller;
+        }
+    }
+
+    public CachingSolver(Solver solver, int capacity) {
+        this.solver = solver;
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                return size() > CachingSolver.this.capacity;
+            }
+        };
+        this.store = Optional.empty();
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    /**
+     * Cache is loaded from the given file if it exists and written back by {@link #save()}
+     */
+    public CachingSolver(Solver solver, int capacity, Path store) {
+        this(solver, capacity);
+        this.store = Optional.of(store);
+        if (Files.exists(store)) {
+            load(store);
+        }
+    }
+
+    public CachingSolver(Solver solver) {
+        this(solver, DEFAULT_CAPACITY);
+    }
+
+    private Query normalize(List<Node> clauses, List<Node> assumptions) {
+        List<Node> expanded = new ArrayList<>();
+        Map<Node, String> abstracted = new HashMap<>();
+        for (Node clause : clauses) {
+            Node node = expand(clause);
+            if (!abstracted.containsKey(node)) {
+                StringBuilder builder = new StringBuilder();
+                print(node, null, builder);
+                abstracted.put(node, builder.toString());
+                expanded.add(node);
+            }
+        }
+        // stable, so clauses with the same shape keep their relative order
+        expanded.sort(Comparator.comparing(abstracted::get));
+
+        VariableMarshaller marshaller = new VariableMarshaller();
+        StringBuilder builder = new StringBuilder();
+        for (Node clause : expanded) {
+            print(clause, marshaller, builder);
+            builder.append(' ');
+        }
+        builder.append('|');
+        for (Node assumption : assumptions) {
+            builder.append(' ');
+            print(expand(assumption), marshaller, builder);
+        }
+        builder.append(" |");
+        List<Variable> variables = new ArrayList<>(marshaller.getVariables());
+        variables.sort(Comparator.comparing(marshaller::toString));
+        for (Variable variable : variables) {
+            builder.append(' ').append(marshaller.toString(variable)).append(':').append(typeName(variable.getType()));
+        }
+        return new Query(builder.toString(), marshaller);
+    }
+
+    private static Node expand(Node node) {
+        if (node instanceof Instantiation) {
+            return ((Instantiation) node).expand();
+        }
+        return node;
+    }
+
+    /**
+     * Unlike toString, distinguishes operators of different theories. Variables are printed by their
+     * canonical names, or by their types when the marshaller is null.
+     */
+    private static void print(Node node, VariableMarshaller marshaller, StringBuilder builder) {
+        if (node instanceof Variable) {
+            if (marshaller == null) {
+                builder.append('_').append(typeName(((Variable) node).getType()));
+            } else {
+                builder.append(marshaller.toString((Variable) node));
+            }
+        } else if (node instanceof BVConst) {
+            builder.append(node).append(':').append(((BVConst) node).getType());
+        } else if (node instanceof Application) {
+            builder.append('(').append(node.getClass().getSimpleName());
+            if (node instanceof UIFApplication) {
+                builder.append(':').append(((UIFApplication) node).getUIF().getName());
+            }
+            for (Node arg : ((Application) node).getArgs()) {
+                builder.append(' ');
+                print(arg, marshaller, builder);
+            }
+            builder.append(')');
+        } else if (node instanceof Instantiation) {
+            print(((Instantiation) node).expand(), marshaller, builder);
+        } else {
+            builder.append(node);
+        }
+    }
+
+    private static String typeName(Type type) {
+        if (type.equals(IntType.TYPE)) {
+            return "Int";
+        } else if (type.equals(BoolType.TYPE)) {
+            return "Bool";
+        } else {
+            return type.toString();
+        }
+    }
+
+    private synchronized CachedResult lookup(String key) {
+        CachedResult entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    private synchronized void remember(String key, CachedResult entry) {
+        entries.put(key, entry);
+    }
+
+    private SolverResult<Map<Variable, Constant>, List<Node>> decode(CachedResult entry,
+                                                                     VariableMarshaller marshaller,
+                                                                     List<Node> assumptions) {
+        if (entry.model != null) {
+            Map<Variable, Constant> model = new HashMap<>();
+            for (Variable variable : marshaller.getVariables()) {
+                model.put(variable, entry.model.get(marshaller.toString(variable)));
+            }
+            return SolverResult.sat(model);
+        }
+        List<Node> core = new ArrayList<>();
+        for (int index : entry.core) {
+            core.add(assumptions.get(index));
+        }
+        return SolverResult.unsat(core);
+    }
+
+    private CachedResult encode(SolverResult<Map<Variable, Constant>, List<Node>> result,
+                         VariableMarshaller marshaller,
+                         List<Node> assumptions) {
+        if (result.isSat()) {
+            Map<String, Constant> model = new HashMap<>();
+            for (Variable variable : marshaller.getVariables()) {
+                Constant value = result.getModel().get(variable);
+                if (value == null) {
+                    return null;
+                }
+                model.put(marshaller.toString(variable), value);
+            }
+            return new CachedResult(model, null);
+        }
+        List<Integer> core = new ArrayList<>();
+        for (Node node : result.getConflict()) {
+            int index = assumptions.indexOf(node);
+            if (index < 0) {
+                return null;
+            }
+            core.add(index);
+        }
+        return new CachedResult(null, core);
+    }
+
+    @Override
+    public SolverResult<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses,
+                                                                            List<Node> assumptions,
+                                                                            SolverLimits limits) {
+        Query query = normalize(clauses, assumptions);
+        CachedResult entry = lookup(query.key);
+        if (entry != null) {
+            return decode(entry, query.marshaller, assumptions);
+        }
+        SolverResult<Map<Variable, Constant>, List<Node>> result = solver.getModelOrCore(clauses, assumptions, limits);
+        if (!result.isUnknown()) {
+            CachedResult computed = encode(result, query.marshaller, assumptions);
+            if (computed != null) {
+                remember(query.key, computed);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+        return getModelOrCore(clauses, assumptions, SolverLimits.NONE).toEither();
+    }
+
+    @Override
+    public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+        return getModelOrCore(clauses, new ArrayList<>(), SolverLimits.NONE).toOptional();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        if (total == 0) {
+            return 0.0;
+        }
+        return (double) hits / total;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Write the cache to its file, one entry per line, least recently used first
+     */
+    public synchronized void save() throws IOException {
+        if (!store.isPresent()) {
+            throw new UnsupportedOperationException("cache has no file");
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(store.get(), CHARSET)) {
+            for (Map.Entry<String, CachedResult> entry : entries.entrySet()) {
+                writer.write(serialize(entry.getKey(), entry.getValue()));
+                writer.newLine();
+            }
+        }
+        logger.info("saved " + entries.size() + " cached results to " + store.get());
+    }
+
+    private void load(Path file) {
+        int loaded = 0;
+        try {
+            for (String line : Files.readAllLines(file, CHARSET)) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    String[] parts = line.split("\t", -1);
+                    entries.put(parts[1], deserialize(parts[0], parts[2]));
+                    loaded++;
+                } catch (RuntimeException e) {
+                    logger.warn("skipping malformed cache entry: " + line);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("failed to load solver cache from " + file + ": " + e);
+        }
+        logger.info("loaded " + loaded + " cached results from " + file);
+    }
+
+    private static String serialize(String key, CachedResult entry) {
+        StringBuilder builder = new StringBuilder();
+        if (entry.model != null) {
+            builder.append("SAT\t").append(key).append('\t');
+            List<String> names = new ArrayList<>(entry.model.keySet());
+            Collections.sort(names);
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(names.get(i)).append('=').append(serialize(entry.model.get(names.get(i))));
+            }
+        } else {
+            builder.append("UNSAT\t").append(key).append('\t');
+            for (int i = 0; i < entry.core.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(entry.core.get(i));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String serialize(Constant constant) {
+        if (constant instanceof IntConst) {
+            return "Int:" + ((IntConst) constant).getValue();
+        } else if (constant instanceof BoolConst) {
+            return "Bool:" + ((BoolConst) constant).getValue();
+        } else if (constant instanceof BVConst) {
+            return ((BVConst) constant).getType() + ":" + ((BVConst) constant).getLong();
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static CachedResult deserialize(String status, String value) {
+        if (status.equals("SAT")) {
+            Map<String, Constant> model = new HashMap<>();
+            if (!value.isEmpty()) {
+                for (String assignment : value.split(",")) {
+                    int eq = assignment.indexOf('=');
+                    model.put(assignment.substring(0, eq), deserialize(assignment.substring(eq + 1)));
+                }
+            }
+            return new CachedResult(model, null);
+        } else if (status.equals("UNSAT")) {
+            List<Integer> core = new ArrayList<>();
+            if (!value.isEmpty()) {
+                for (String index : value.split(",")) {
+                    core.add(Integer.parseInt(index));
+                }
+            }
+            return new CachedResult(null, core);
+        } else {
+            throw new RuntimeException("unknown status " + status);
+        }
+    }
+
+    private static Constant deserialize(String constant) {
+        int colon = constant.indexOf(':');
+        String type = constant.substring(0, colon);
+        String value = constant.substring(colon + 1);
+        if (type.equals("Int")) {
+            return IntConst.of(Integer.parseInt(value));
+        } else if (type.equals("Bool")) {
+            return BoolConst.of(Boolean.parseBoolean(value));
+        } else if (type.startsWith("BV")) {
+            return BVConst.ofLong(Long.parseLong(value), Integer.parseInt(type.substring(2)));
+        } else {
+            throw new RuntimeException("unknown type " + type);
+        }
+    }
+}
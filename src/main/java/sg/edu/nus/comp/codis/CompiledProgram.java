@@ -0,0 +1,135 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.BVConst;
+import sg.edu.nus.comp.codis.ast.theory.BoolConst;
+import sg.edu.nus.comp.codis.ast.theory.IntConst;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executable form of a program produced by {@link ProgramCompiler}. Inputs and output are encoded as longs:
+ * booleans as 0/1, bit-vectors as unsigned values, inputs are ordered as in {@link #getInputs()}.
+ */
+public class CompiledProgram {
+
+    public interface Kernel {
+        long apply(long[] inputs);
+    }
+
+    /**
+     * Superclass of generated kernels. They are defined by their own class loader, so they cannot call
+     * {@link Arithmetic} directly and use the inherited helpers instead.
+     */
+    public static abstract class GeneratedKernel implements Kernel {
+
+        protected static long signed(long value, int width) {
+            return Arithmetic.signed(value, width);
+        }
+
+        protected static long div(long a, long b) {
+            return Arithmetic.div(a, b);
+        }
+
+        protected static long udiv(long a, long b, int width) {
+            return Arithmetic.udiv(a, b, width);
+        }
+
+        protected static long urem(long a, long b) {
+            return Arithmetic.urem(a, b);
+        }
+
+        protected static long sdiv(long a, long b, int width) {
+            return Arithmetic.sdiv(a, b, width);
+        }
+
+        protected static long srem(long a, long b, int width) {
+            return Arithmetic.srem(a, b, width);
+        }
+
+        protected static long smod(long a, long b, int width) {
+            return Arithmetic.smod(a, b, width);
+        }
+
+        protected static long shl(long a, long b, int width) {
+            return Arithmetic.shl(a, b, width);
+        }
+
+        protected static long lshr(long a, long b, int width) {
+            return Arithmetic.lshr(a, b, width);
+        }
+
+        protected static long ashr(long a, long b, int width) {
+            return Arithmetic.ashr(a, b, width);
+        }
+    }
+
+    private List<ProgramVariable> inputs;
+
+    private Type outputType;
+
+    private Kernel kernel;
+
+    private boolean bytecode;
+
+    CompiledProgram(List<ProgramVariable> inputs, Type outputType, Kernel kernel, boolean bytecode) {
+        this.inputs = inputs;
+        this.outputType = outputType;
+        this.kernel = kernel;
+        this.bytecode = bytecode;
+    }
+
+    public List<ProgramVariable> getInputs() {
+        return inputs;
+    }
+
+    public Type getOutputType() {
+        return outputType;
+    }
+
+    /**
+     * @return false if the program could not be compiled and runs as a tree of closures
+     */
+    public boolean isBytecode() {
+        return bytecode;
+    }
+
+    public long apply(long[] inputs) {
+        return kernel.apply(inputs);
+    }
+
+    public Constant apply(Map<ProgramVariable, ? extends Constant> assignment) {
+        long[] values = new long[inputs.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = encode(assignment.get(inputs.get(i)));
+        }
+        return decode(kernel.apply(values), outputType);
+    }
+
+    public static long encode(Constant constant) {
+        if (constant instanceof IntConst) {
+            return ((IntConst) constant).getValue();
+        } else if (constant instanceof BoolConst) {
+            return ((BoolConst) constant).getValue() ? 1 : 0;
+        } else if (constant instanceof BVConst) {
+            BVConst bv = (BVConst) constant;
+            return bv.getLong() & Arithmetic.mask(bv.getType().getSize());
+        } else {
+            throw new IllegalArgumentException("missing input value");
+        }
+    }
+
+    public static Constant decode(long value, Type type) {
+        if (type.equals(IntType.TYPE)) {
+            return IntConst.of((int) value);
+        } else if (type.equals(BoolType.TYPE)) {
+            return BoolConst.of(value != 0);
+        } else if (type instanceof BVType) {
+            return BVConst.ofLong(value, ((BVType) type).getSize());
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package sg.edu.nus.comp.codis;
 
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.Multiset;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -26,6 +27,21 @@ public class ComponentBasedSynthesis implements Synthesis {
     private Type encodingType;
     private Optional<Integer> sizeBound;
 
+    // pass library and connection clauses to the solver as templates instantiated natively for each test
+    private boolean templateInstantiation = false;
+
+    private SolverLimits limits = SolverLimits.NONE;
+
+    // incremental state: the same components are re-encoded for growing test suites in CEGIS,
+    // so only clauses of new tests are asserted into the session
+    private SolverSession session;
+    private Multiset<Node> sessionComponents;
+    private List<Component> sessionFlattenedComponents;
+    private Component sessionResult;
+    private List<Node> sessionLibrary;
+    private List<Node> sessionConnections;
+    private Set<TestCase> sessionTests;
+
     public ComponentBasedSynthesis(Solver solver, boolean useBV32, Optional<Integer> sizeBound) {
         this.solver = solver;
         if (useBV32) {
@@ -36,18 +52,77 @@ public class ComponentBasedSynthesis implements Synthesis {
         this.sizeBound = sizeBound;
     }
 
+    public void setTemplateInstantiation(boolean templateInstantiation) {
+        this.templateInstantiation = templateInstantiation;
+    }
+
+    /**
+     * When the solver gives up within the limits, nothing is synthesized
+     */
+    @Override
+    public void setLimits(SolverLimits limits) {
+        this.limits = limits;
+    }
+
     @Override
     public Optional<Pair<Program, Map<Parameter, Constant>>> synthesize(List<TestCase> testSuite, Multiset<Node> components) {
+        if (solver instanceof IncrementalSolver) {
+            return synthesizeIncrementally(testSuite, components);
+        }
         List<Component> flattenedComponents = components.stream().map(Component::new).collect(Collectors.toList());
         Type outputType = testSuite.get(0).getOutputType();
         Component result = new Component(new Hole("result", outputType, Node.class));
         List<Node> clauses = encode(testSuite, flattenedComponents, result);
 
-        Optional<Map<Variable, Constant>> assignment = solver.getModel(clauses);
-        if (assignment.isPresent()) {
-            return Optional.of(decode(assignment.get(), flattenedComponents, result));
-        } else {
-            return Optional.empty();
+        return decode(solver.getModel(clauses, limits), flattenedComponents, result);
+    }
+
+    private Optional<Pair<Program, Map<Parameter, Constant>>> decode(SolverResult<Map<Variable, Constant>, List<Node>> outcome,
+                                                                     List<Component> components,
+                                                                     Component result) {
+        if (outcome.isSat()) {
+            return Optional.of(decode(outcome.getModel(), components, result));
+        }
+        if (outcome.isUnknown()) {
+            logger.warn("synthesis query unknown (" + outcome.getReason() + ")");
+        }
+        return Optional.empty();
+    }
+
+    private Optional<Pair<Program, Map<Parameter, Constant>>> synthesizeIncrementally(List<TestCase> testSuite,
+                                                                                      Multiset<Node> components) {
+        Type outputType = testSuite.get(0).getOutputType();
+        boolean reusable = session != null &&
+                components.equals(sessionComponents) &&
+                TypeInference.typeOf(sessionResult.getSemantics()).equals(outputType) &&
+                testSuite.containsAll(sessionTests);
+        if (!reusable) {
+            if (session != null) {
+                session.dispose();
+            }
+            session = ((IncrementalSolver) solver).openSession();
+            sessionComponents = HashMultiset.create(components);
+            sessionFlattenedComponents = components.stream().map(Component::new).collect(Collectors.toList());
+            sessionResult = new Component(new Hole("result", outputType, Node.class));
+            sessionLibrary = library(sessionFlattenedComponents, sessionResult);
+            sessionConnections = connection(sessionFlattenedComponents, sessionResult);
+            sessionTests = new HashSet<>();
+            session.add(wellFormedness(sessionFlattenedComponents, sessionResult));
+        }
+        for (TestCase test : testSuite) {
+            if (sessionTests.add(test)) {
+                session.add(encodeTest(test, sessionLibrary, sessionConnections, sessionResult));
+            }
+        }
+
+        return decode(session.getModel(limits), sessionFlattenedComponents, sessionResult);
+    }
+
+    @Override
+    public void dispose() {
+        if (session != null) {
+            session.dispose();
+            session = null;
         }
     }
 
@@ -210,14 +285,24 @@ public class ComponentBasedSynthesis implements Synthesis {
         List<Node> clauses = new ArrayList<>();
         clauses.addAll(wfp);
         for (TestCase test : testSuite) {
-            for (Node node : lib) {
-                clauses.add(instantiate(node, test));
-            }
-            for (Node node : connections) {
+            clauses.addAll(encodeTest(test, lib, connections, result));
+        }
+        return clauses;
+    }
+
+    private List<Node> encodeTest(TestCase test, List<Node> lib, List<Node> connections, Component result) {
+        List<Node> clauses = new ArrayList<>();
+        List<Node> templates = new ArrayList<>(lib);
+        templates.addAll(connections);
+        for (Node node : templates) {
+            if (templateInstantiation) {
+                // library and connection clauses contain no variables that Node.instantiate treats differently
+                clauses.add(new Instantiation(node, test));
+            } else {
                 clauses.add(instantiate(node, test));
             }
-            clauses.addAll(testToConstraint(test, result));
         }
+        clauses.addAll(testToConstraint(test, result));
         return clauses;
     }
 
@@ -240,12 +325,13 @@ public class ComponentBasedSynthesis implements Synthesis {
         }
         Constant location = assignment.get(root);
         Optional<Variable> reference = Optional.empty();
-        for (Map.Entry<Variable, Constant> entry : assignment.entrySet()) {
-            if (entry.getKey() instanceof Location) {
-                Variable variable = ((Location)entry.getKey()).getVariable();
+        // only output locations are evaluated, the model can be lazy
+        for (Variable key : assignment.keySet()) {
+            if (key instanceof Location) {
+                Variable variable = ((Location)key).getVariable();
                 if (variable instanceof ComponentOutput &&
                         components.contains(((ComponentOutput)variable).getComponent()) &&
-                        entry.getValue().equals(location)) {
+                        assignment.get(key).equals(location)) {
                     reference = Optional.of(variable);
                     break;
                 }
@@ -5,9 +5,12 @@ import sg.edu.nus.comp.codis.ast.theory.Equal;
 
 import java.util.ArrayList;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Created by Sergey Mechtaev on 7/4/2016.
+ *
+ * Ground expressions are evaluated by the {@link Interpreter}, the solver is used only for the rest.
  */
 public class Evaluator {
 
@@ -18,6 +21,10 @@ public class Evaluator {
     }
 
     public Node eval(Node node, Map<ProgramVariable, ? extends Node> assignment) {
+        Optional<Constant> value = Interpreter.eval(node, assignment);
+        if (value.isPresent()) {
+            return value.get();
+        }
         ProgramVariable result = new ProgramVariable("<evaluationResult>", TypeInference.typeOf(node));
         ArrayList<Node> clauses = new ArrayList<>();
         clauses.add(new Equal(result, node));
@@ -0,0 +1,8 @@
+package sg.edu.nus.comp.codis;
+
+/**
+ * Solver that can open incremental sessions
+ */
+public interface IncrementalSolver {
+    SolverSession openSession();
+}
@@ -13,4 +13,13 @@ import java.util.Map;
  */
 public interface InterpolatingSolver {
     Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses);
+
+    /**
+     * Query bounded by the given limits, backends that cannot enforce them ignore the limits
+     */
+    default SolverResult<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses,
+                                                                              List<Node> rightClauses,
+                                                                              SolverLimits limits) {
+        return SolverResult.of(getModelOrInterpolant(leftClauses, rightClauses));
+    }
 }
@@ -0,0 +1,610 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+
+/**
+ * Evaluates ground formulas without a solver. Bit-vector operators follow SMT-LIB semantics, including
+ * division by zero and shifts beyond the width, and produce unsigned values like the solver backends.
+ *
+ * Formulas with free variables, uninterpreted functions, integer division by zero or integer overflow
+ * are reported as not ground.
+ */
+public class Interpreter {
+
+    private static final int INT = -1;
+    private static final int BOOL = 0;
+
+    private static class NotGroundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static final NotGroundException NOT_GROUND = new NotGroundException();
+
+    /**
+     * @return value of the node, or empty if it is not ground under the assignment
+     */
+    public static Optional<Constant> eval(Node node, Map<? extends Variable, ? extends Node> assignment) {
+        Map<Variable, Constant> values = new HashMap<>();
+        for (Map.Entry<? extends Variable, ? extends Node> entry : assignment.entrySet()) {
+            Optional<Constant> value = eval(entry.getValue(), Collections.emptyMap());
+            if (!value.isPresent()) {
+                return Optional.empty();
+            }
+            values.put(entry.getKey(), value.get());
+        }
+        try {
+            return Optional.of(evaluate(node, values));
+        } catch (NotGroundException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Decides conjunctions in which every variable is fixed by an equality with a ground term,
+     * such as tests instantiated with a program.
+     *
+     * @return satisfiability of the clauses, or empty if they are not ground
+     */
+    public static Optional<Boolean> check(List<Node> clauses) {
+        Map<Variable, Constant> assignment = new HashMap<>();
+        LinkedList<Node> pending = new LinkedList<>(clauses);
+        boolean progress = true;
+        while (progress && !pending.isEmpty()) {
+            progress = false;
+            Iterator<Node> iterator = pending.iterator();
+            while (iterator.hasNext()) {
+                Node clause = iterator.next();
+                try {
+                    if (!((BoolConst) evaluate(clause, assignment)).getValue()) {
+                        return Optional.of(false);
+                    }
+                    iterator.remove();
+                    progress = true;
+                    continue;
+                } catch (NotGroundException e) {
+                    // try to use it as a definition
+                }
+                if (clause instanceof Equal) {
+                    Node left = ((Equal) clause).getLeft();
+                    Node right = ((Equal) clause).getRight();
+                    if (define(left, right, assignment) || define(right, left, assignment)) {
+                        iterator.remove();
+                        progress = true;
+                    }
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            return Optional.of(true);
+        }
+        return Optional.empty();
+    }
+
+    private static boolean define(Node variable, Node term, Map<Variable, Constant> assignment) {
+        if (!(variable instanceof Variable) || assignment.containsKey(variable)) {
+            return false;
+        }
+        try {
+            assignment.put((Variable) variable, evaluate(term, assignment));
+            return true;
+        } catch (NotGroundException e) {
+            return false;
+        }
+    }
+
+    private static Constant evaluate(Node node, Map<Variable, Constant> assignment) {
+        InterpreterVisitor visitor = new InterpreterVisitor(assignment);
+        node.accept(visitor);
+        return visitor.getValue();
+    }
+
+    /**
+     * Values are kept on a stack of longs, their kinds are INT, BOOL or bit-vector width
+     */
+    private static class InterpreterVisitor implements BottomUpVisitor {
+
+        private Map<Variable, Constant> assignment;
+
+        private long[] values;
+        private int[] kinds;
+        private int size;
+
+        InterpreterVisitor(Map<Variable, Constant> assignment) {
+            this.assignment = assignment;
+            this.values = new long[16];
+            this.kinds = new int[16];
+            this.size = 0;
+        }
+
+        Constant getValue() {
+            assert size == 1;
+            long value = values[0];
+            int kind = kinds[0];
+            if (kind == INT) {
+                if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw NOT_GROUND;
+                }
+                return IntConst.of((int) value);
+            } else if (kind == BOOL) {
+                return BoolConst.of(value != 0);
+            } else {
+                return BVConst.ofLong(value, kind);
+            }
+        }
+
+        private void push(long value, int kind) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                kinds = Arrays.copyOf(kinds, size * 2);
+            }
+            values[size] = value;
+            kinds[size] = kind;
+            size++;
+        }
+
+        private void pushBool(boolean value) {
+            push(value ? 1 : 0, BOOL);
+        }
+
+        private long pop() {
+            return values[--size];
+        }
+
+        private int topKind() {
+            return kinds[size - 1];
+        }
+
+        private void pushConstant(Constant constant) {
+            if (constant instanceof IntConst) {
+                push(((IntConst) constant).getValue(), INT);
+            } else if (constant instanceof BoolConst) {
+                pushBool(((BoolConst) constant).getValue());
+            } else if (constant instanceof BVConst) {
+                int width = ((BVConst) constant).getType().getSize();
+                push(((BVConst) constant).getLong() & Arithmetic.mask(width), width);
+            } else {
+                throw new UnsupportedOperationException();
+            }
+        }
+
+        private void processVariable(Variable variable) {
+            Constant value = assignment.get(variable);
+            if (value == null) {
+                throw NOT_GROUND;
+            }
+            pushConstant(value);
+        }
+
+        private boolean popBool() {
+            return pop() != 0;
+        }
+
+        @Override
+        public void visit(ProgramVariable programVariable) {
+            processVariable(programVariable);
+        }
+
+        @Override
+        public void visit(Location location) {
+            processVariable(location);
+        }
+
+        @Override
+        public void visit(UIFApplication UIFApplication) {
+            throw NOT_GROUND;
+        }
+
+        @Override
+        public void visit(Equal equal) {
+            long right = pop();
+            long left = pop();
+            pushBool(left == right);
+        }
+
+        @Override
+        public void visit(Add add) {
+            long right = pop();
+            long left = pop();
+            try {
+                push(Math.addExact(left, right), INT);
+            } catch (ArithmeticException e) {
+                throw NOT_GROUND;
+            }
+        }
+
+        @Override
+        public void visit(Sub sub) {
+            long right = pop();
+            long left = pop();
+            try {
+                push(Math.subtractExact(left, right), INT);
+            } catch (ArithmeticException e) {
+                throw NOT_GROUND;
+            }
+        }
+
+        @Override
+        public void visit(Mult mult) {
+            long right = pop();
+            long left = pop();
+            try {
+                push(Math.multiplyExact(left, right), INT);
+            } catch (ArithmeticException e) {
+                throw NOT_GROUND;
+            }
+        }
+
+        @Override
+        public void visit(Div div) {
+            long right = pop();
+            long left = pop();
+            // SMT-LIB leaves division by zero unspecified, the remainder is always non-negative
+            if (right == 0 || (left == Long.MIN_VALUE && right == -1)) {
+                throw NOT_GROUND;
+            }
+            push(Arithmetic.div(left, right), INT);
+        }
+
+        @Override
+        public void visit(And and) {
+            boolean right = popBool();
+            boolean left = popBool();
+            pushBool(left && right);
+        }
+
+        @Override
+        public void visit(Or or) {
+            boolean right = popBool();
+            boolean left = popBool();
+            pushBool(left || right);
+        }
+
+        @Override
+        public void visit(Iff iff) {
+            boolean right = popBool();
+            boolean left = popBool();
+            pushBool(left == right);
+        }
+
+        @Override
+        public void visit(Impl impl) {
+            boolean right = popBool();
+            boolean left = popBool();
+            pushBool(!left || right);
+        }
+
+        @Override
+        public void visit(Greater greater) {
+            long right = pop();
+            long left = pop();
+            pushBool(left > right);
+        }
+
+        @Override
+        public void visit(Less less) {
+            long right = pop();
+            long left = pop();
+            pushBool(left < right);
+        }
+
+        @Override
+        public void visit(GreaterOrEqual greaterOrEqual) {
+            long right = pop();
+            long left = pop();
+            pushBool(left >= right);
+        }
+
+        @Override
+        public void visit(LessOrEqual lessOrEqual) {
+            long right = pop();
+            long left = pop();
+            pushBool(left <= right);
+        }
+
+        @Override
+        public void visit(Minus minus) {
+            long arg = pop();
+            try {
+                push(Math.negateExact(arg), INT);
+            } catch (ArithmeticException e) {
+                throw NOT_GROUND;
+            }
+        }
+
+        @Override
+        public void visit(Not not) {
+            pushBool(!popBool());
+        }
+
+        @Override
+        public void visit(IntConst intConst) {
+            pushConstant(intConst);
+        }
+
+        @Override
+        public void visit(BoolConst boolConst) {
+            pushConstant(boolConst);
+        }
+
+        @Override
+        public void visit(ComponentInput componentInput) {
+            processVariable(componentInput);
+        }
+
+        @Override
+        public void visit(ComponentOutput componentOutput) {
+            processVariable(componentOutput);
+        }
+
+        @Override
+        public void visit(TestInstance testInstance) {
+            processVariable(testInstance);
+        }
+
+        @Override
+        public void visit(Parameter parameter) {
+            processVariable(parameter);
+        }
+
+        @Override
+        public void visit(Hole hole) {
+            processVariable(hole);
+        }
+
+        @Override
+        public void visit(ITE ite) {
+            int kind = topKind();
+            long elseValue = pop();
+            long thenValue = pop();
+            boolean condition = popBool();
+            push(condition ? thenValue : elseValue, kind);
+        }
+
+        @Override
+        public void visit(Selector selector) {
+            processVariable(selector);
+        }
+
+        @Override
+        public void visit(BVConst bvConst) {
+            pushConstant(bvConst);
+        }
+
+        @Override
+        public void visit(BVAdd bvAdd) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push((left + right) & Arithmetic.mask(width), width);
+        }
+
+        @Override
+        public void visit(BVAnd bvAnd) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push(left & right, width);
+        }
+
+        @Override
+        public void visit(BVMult bvMult) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push((left * right) & Arithmetic.mask(width), width);
+        }
+
+        @Override
+        public void visit(BVNeg bvNeg) {
+            int width = topKind();
+            push(-pop() & Arithmetic.mask(width), width);
+        }
+
+        @Override
+        public void visit(BVNot bvNot) {
+            int width = topKind();
+            push(~pop() & Arithmetic.mask(width), width);
+        }
+
+        @Override
+        public void visit(BVOr bvOr) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push(left | right, width);
+        }
+
+        @Override
+        public void visit(BVShiftLeft bvShiftLeft) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push(Arithmetic.shl(left, right, width), width);
+        }
+
+        @Override
+        public void visit(BVSignedDiv bvSignedDiv) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push(Arithmetic.sdiv(left, right, width), width);
+        }
+
+        @Override
+        public void visit(BVSignedGreater bvSignedGreater) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            pushBool(Arithmetic.signed(left, width) > Arithmetic.signed(right, width));
+        }
+
+        @Override
+        public void visit(BVSignedGreaterOrEqual bvSignedGreaterOrEqual) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            pushBool(Arithmetic.signed(left, width) >= Arithmetic.signed(right, width));
+        }
+
+        @Override
+        public void visit(BVSignedLess bvSignedLess) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            pushBool(Arithmetic.signed(left, width) < Arithmetic.signed(right, width));
+        }
+
+        @Override
+        public void visit(BVSignedLessOrEqual bvSignedLessOrEqual) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            pushBool(Arithmetic.signed(left, width) <= Arithmetic.signed(right, width));
+        }
+
+        @Override
+        public void visit(BVSignedModulo bvSignedModulo) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push(Arithmetic.smod(left, right, width), width);
+        }
+
+        @Override
+        public void visit(BVSignedRemainder bvSignedRemainder) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push(Arithmetic.srem(left, right, width), width);
+        }
+
+        @Override
+        public void visit(BVSignedShiftRight bvSignedShiftRight) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push(Arithmetic.ashr(left, right, width), width);
+        }
+
+        @Override
+        public void visit(BVSub bvSub) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push((left - right) & Arithmetic.mask(width), width);
+        }
+
+        @Override
+        public void visit(BVUnsignedDiv bvUnsignedDiv) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push(Arithmetic.udiv(left, right, width), width);
+        }
+
+        @Override
+        public void visit(BVUnsignedGreater bvUnsignedGreater) {
+            long right = pop();
+            long left = pop();
+            pushBool(Long.compareUnsigned(left, right) > 0);
+        }
+
+        @Override
+        public void visit(BVUnsignedGreaterOrEqual bvUnsignedGreaterOrEqual) {
+            long right = pop();
+            long left = pop();
+            pushBool(Long.compareUnsigned(left, right) >= 0);
+        }
+
+        @Override
+        public void visit(BVUnsignedLess bvUnsignedLess) {
+            long right = pop();
+            long left = pop();
+            pushBool(Long.compareUnsigned(left, right) < 0);
+        }
+
+        @Override
+        public void visit(BVUnsignedLessOrEqual bvUnsignedLessOrEqual) {
+            long right = pop();
+            long left = pop();
+            pushBool(Long.compareUnsigned(left, right) <= 0);
+        }
+
+        @Override
+        public void visit(BVUnsignedRemainder bvUnsignedRemainder) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push(Arithmetic.urem(left, right), width);
+        }
+
+        @Override
+        public void visit(BVUnsignedShiftRight bvUnsignedShiftRight) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push(Arithmetic.lshr(left, right, width), width);
+        }
+
+        @Override
+        public void visit(BranchOutput branchOutput) {
+            processVariable(branchOutput);
+        }
+
+        @Override
+        public void visit(BVNand bvNand) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push(~(left & right) & Arithmetic.mask(width), width);
+        }
+
+        @Override
+        public void visit(BVXor bvXor) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push(left ^ right, width);
+        }
+
+        @Override
+        public void visit(BVNor bvNor) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push(~(left | right) & Arithmetic.mask(width), width);
+        }
+
+        @Override
+        public void visit(BVXnor bvXnor) {
+            int width = topKind();
+            long right = pop();
+            long left = pop();
+            push(~(left ^ right) & Arithmetic.mask(width), width);
+        }
+
+        @Override
+        public void visit(ProgramOutput programOutput) {
+            processVariable(programOutput);
+        }
+
+        @Override
+        public void visit(Dummy dummy) {
+            processVariable(dummy);
+        }
+
+        @Override
+        public void visit(Indexed indexed) {
+            processVariable(indexed);
+        }
+    }
+
+}
@@ -0,0 +1,13 @@
+package sg.edu.nus.comp.codis;
+
+/**
+ * Solver whose running query can be stopped from another thread
+ */
+public interface Interruptible {
+    void interrupt();
+
+    /**
+     * Clear an interrupt left by a previous query, before the next query is started
+     */
+    void resetInterrupt();
+}
@@ -0,0 +1,128 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Model that evaluates a variable in the backend the first time it is looked up. Backends invalidate
+ * the model when they start the next query, values that were not read before that are lost.
+ */
+public class LazyModel extends AbstractMap<Variable, Constant> {
+
+    private Set<Variable> domain;
+    private Function<Variable, Constant> evaluator;
+    private Map<Variable, Constant> values;
+    private boolean valid;
+
+    public LazyModel(Set<Variable> domain, Function<Variable, Constant> evaluator) {
+        this.domain = domain;
+        this.evaluator = evaluator;
+        this.values = new HashMap<>();
+        this.valid = true;
+    }
+
+    @Override
+    public Constant get(Object key) {
+        if (!domain.contains(key)) {
+            return null;
+        }
+        Constant value = values.get(key);
+        if (value == null) {
+            if (!valid) {
+                throw new RuntimeException("model is invalidated by a later query");
+            }
+            value = evaluator.apply((Variable) key);
+            values.put((Variable) key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return domain.contains(key);
+    }
+
+    @Override
+    public Set<Variable> keySet() {
+        return Collections.unmodifiableSet(domain);
+    }
+
+    @Override
+    public int size() {
+        return domain.size();
+    }
+
+    /**
+     * Iterating over entries evaluates all variables
+     */
+    @Override
+    public Set<Entry<Variable, Constant>> entrySet() {
+        return new AbstractSet<Entry<Variable, Constant>>() {
+            @Override
+            public Iterator<Entry<Variable, Constant>> iterator() {
+                Iterator<Variable> variables = domain.iterator();
+                return new Iterator<Entry<Variable, Constant>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return variables.hasNext();
+                    }
+
+                    @Override
+                    public Entry<Variable, Constant> next() {
+                        Variable variable = variables.next();
+                        return new SimpleImmutableEntry<>(variable, get(variable));
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return domain.size();
+            }
+        };
+    }
+
+    public void invalidate() {
+        valid = false;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public int getEvaluatedCount() {
+        return values.size();
+    }
+
+    /**
+     * Copy of the model that does not depend on the backend, e.g. before the backend is used by another thread
+     */
+    public static Map<Variable, Constant> materialize(Map<Variable, Constant> model) {
+        if (model instanceof LazyModel) {
+            return new HashMap<>(model);
+        }
+        return model;
+    }
+
+    public static Optional<Map<Variable, Constant>> materialize(Optional<Map<Variable, Constant>> model) {
+        return model.map(LazyModel::materialize);
+    }
+
+    public static <C> Either<Map<Variable, Constant>, C> materialize(Either<Map<Variable, Constant>, C> result) {
+        if (result.isLeft()) {
+            return Either.left(materialize(result.left().value()));
+        }
+        return result;
+    }
+
+    public static <C> SolverResult<Map<Variable, Constant>, C> materialize(SolverResult<Map<Variable, Constant>, C> result) {
+        if (result.isSat()) {
+            return SolverResult.sat(materialize(result.getModel()));
+        }
+        return result;
+    }
+}
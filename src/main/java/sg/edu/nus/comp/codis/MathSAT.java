@@ -8,36 +8,48 @@ import sg.edu.nus.comp.codis.ast.*;
 import sg.edu.nus.comp.codis.ast.theory.*;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
 import java.util.*;
 
 /**
  * Created by Alberto Griggio on 28/4/2016.
  */
-public class MathSAT implements Solver, InterpolatingSolver {
+public class MathSAT implements Solver, InterpolatingSolver, IncrementalSolver, Interruptible {
 
     private Logger logger = LoggerFactory.getLogger(MathSAT.class);
 
     private long config;
     private long solver = 0;
 
-    private MathSAT(boolean interpolating) {
+    private TranslationCache<Long> cache;
+
+    // polled by the termination test of the environment
+    private volatile boolean interrupted = false;
+
+    // wall-clock deadline of the running query, also polled by the termination test
+    private volatile long deadline = Long.MAX_VALUE;
+
+    // model of the last query, released by the next one
+    private LazyModel lastModel;
+    private long lastModelHandle = 0;
+
+    /**
+     * Interpolating configuration also answers model and core queries, so pooled backends use it
+     */
+    MathSAT(boolean interpolating) {
         this.config = mathsat.api.msat_create_config();
         mathsat.api.msat_set_option(this.config, "model_generation", "true");
         if (interpolating) {
             mathsat.api.msat_set_option(this.config, "interpolation", "true");
         }
+        this.cache = new TranslationCache<>(TranslationCache.DEFAULT_CAPACITY);
         //mathsat.api.msat_set_option(this.config, "debug.api_call_trace", "1");
         //mathsat.api.msat_set_option(this.config, "debug.api_call_trace_filename", "trace.smt2");
     }
 
     private void reset() {
         this.solver = mathsat.api.msat_create_env(this.config);
+        mathsat.api.msat_set_termination_test(this.solver,
+                () -> interrupted || System.currentTimeMillis() > deadline);
     }
 
     public static Solver buildSolver() {
@@ -49,8 +61,10 @@ public class MathSAT implements Solver, InterpolatingSolver {
     }
 
     public void dispose() {
+        releaseModel();
         if (solver != 0) {
             mathsat.api.msat_destroy_env(this.solver);
+            this.solver = 0;
 //            mathsat.api.msat_destroy_config(this.config);
         }
     }
@@ -60,60 +74,164 @@ public class MathSAT implements Solver, InterpolatingSolver {
     }
 
     @Override
-    public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses,
-                                                                      List<Node> assumptions) {
+    public void interrupt() {
+        interrupted = true;
+    }
 
-        dispose();
-        reset();
-        VariableMarshaller marshaller = new VariableMarshaller();
-        for (Node clause : clauses) {
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(marshaller);
-            clause.accept(visitor);
-            mathsat.api.msat_assert_formula(solver, visitor.getExpr());
-        }
-        ArrayList<Long> assumptionExprs = new ArrayList<>();
-        for (Node assumption : assumptions) {
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(marshaller);
-            assumption.accept(visitor);
-            assumptionExprs.add(visitor.getExpr());
+    @Override
+    public void resetInterrupt() {
+        interrupted = false;
+    }
+
+    /**
+     * Queries share the environment so that cached terms remain valid, each of them is asserted
+     * in a separate backtrack point. When the number of marshalled variables exceeds the cache bound,
+     * the environment is recreated and the whole cache is dropped with it.
+     */
+    private void beginQuery(SolverLimits limits) {
+        releaseModel();
+        deadline = limits.getTimeout().map(t -> System.currentTimeMillis() + t).orElse(Long.MAX_VALUE);
+        if (limits.getResourceLimit().isPresent()) {
+            logger.debug("MathSAT does not support resource limits, ignoring " + limits);
+        }
+        if (solver == 0 || cache.isFull()) {
+            dispose();
+            reset();
+            cache.clear();
+        }
+        if (mathsat.api.msat_push_backtrack_point(solver) != 0) {
+            throw msatError();
         }
+    }
 
-        long[] assumptionArray = new long[assumptionExprs.size()];
-        int idx = 0;
-        for (long a : assumptionExprs) {
-            assumptionArray[idx++] = a;
+    private void endQuery() {
+        deadline = Long.MAX_VALUE;
+        mathsat.api.msat_pop_backtrack_point(solver);
+    }
+
+    private String unknownReason() {
+        if (interrupted) {
+            return "interrupted";
+        }
+        if (System.currentTimeMillis() > deadline) {
+            return "timeout";
         }
+        return mathsat.api.msat_last_error_message(solver);
+    }
 
-        int status = mathsat.api.msat_solve_with_assumptions(solver, assumptionArray);
-        if (status == mathsat.api.MSAT_SAT) {
-            long model = mathsat.api.msat_get_model(solver);
-            if (mathsat.api.MSAT_ERROR_MODEL(model)) {
-                throw msatError();
+    /**
+     * Translate node reusing cached terms, variables of the node are added to the given set
+     */
+    private long translate(Node node, Set<Variable> variables) {
+        if (node instanceof Instantiation) {
+            return instantiate((Instantiation) node, variables);
+        }
+        Long term = cache.get(node);
+        if (term != null) {
+            variables.addAll(node.getSummary().getVariables());
+            return term;
+        }
+        NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(cache);
+        node.accept(visitor);
+        variables.addAll(visitor.getVariables());
+        cache.put(node, visitor.getExpr());
+        return visitor.getExpr();
+    }
+
+    /**
+     * Template is translated once, test instances are substituted for its test-instantiable variables
+     */
+    private long instantiate(Instantiation node, Set<Variable> variables) {
+        Set<Variable> templateVariables = new HashSet<>();
+        long template = translate(node.getTemplate(), templateVariables);
+        List<Long> from = new ArrayList<>();
+        List<Long> to = new ArrayList<>();
+        for (Variable variable : templateVariables) {
+            if (variable.isTestInstantiable()) {
+                from.add(translate(variable, new HashSet<>()));
+                to.add(translate(new TestInstance(variable, node.getTest()), variables));
+            } else {
+                variables.add(variable);
             }
-            try {
-                return Either.left(getAssignment(model, marshaller));
-            } finally {
-                mathsat.api.msat_destroy_model(model);
+        }
+        Long term = cache.get(node);
+        if (term == null) {
+            long[] fromArray = new long[from.size()];
+            long[] toArray = new long[to.size()];
+            for (int i = 0; i < from.size(); i++) {
+                fromArray[i] = from.get(i);
+                toArray[i] = to.get(i);
             }
-        } else if (status == mathsat.api.MSAT_UNKNOWN) {
-            throw msatError();
-        } else {
-            ArrayList<Node> unsatCore = new ArrayList<>();
-            long[] unsatCoreArray = mathsat.api.msat_get_unsat_assumptions(solver);
-            if (unsatCoreArray == null) {
+            term = mathsat.api.msat_apply_substitution(solver, template, fromArray.length, fromArray, toArray);
+            if (mathsat.api.MSAT_ERROR_TERM(term)) {
                 throw msatError();
             }
-            ArrayList<Long> unsatCoreExprs = new ArrayList<>();
-            unsatCoreExprs.ensureCapacity(unsatCoreArray.length);
-            for (int i = 0; i < unsatCoreArray.length; ++i) {
-                unsatCoreExprs.add(unsatCoreArray[i]);
+            cache.put(node, term);
+        }
+        return term;
+    }
+
+    public TranslationCache<?> getTranslationCache() {
+        return cache;
+    }
+
+    @Override
+    public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses,
+                                                                      List<Node> assumptions) {
+        return getModelOrCore(clauses, assumptions, SolverLimits.NONE).toEither();
+    }
+
+    @Override
+    public SolverResult<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses,
+                                                                            List<Node> assumptions,
+                                                                            SolverLimits limits) {
+
+        beginQuery(limits);
+        try {
+            Set<Variable> variables = new HashSet<>();
+            for (Node clause : clauses) {
+                mathsat.api.msat_assert_formula(solver, translate(clause, variables));
+            }
+            ArrayList<Long> assumptionExprs = new ArrayList<>();
+            for (Node assumption : assumptions) {
+                assumptionExprs.add(translate(assumption, variables));
+            }
+
+            long[] assumptionArray = new long[assumptionExprs.size()];
+            int idx = 0;
+            for (long a : assumptionExprs) {
+                assumptionArray[idx++] = a;
             }
-            for (int i=0; i<assumptionExprs.size(); i++) {
-                if (unsatCoreExprs.contains(assumptionExprs.get(i))) {
-                    unsatCore.add(assumptions.get(i));
+
+            int status = mathsat.api.msat_solve_with_assumptions(solver, assumptionArray);
+            if (status == mathsat.api.MSAT_SAT) {
+                long model = mathsat.api.msat_get_model(solver);
+                if (mathsat.api.MSAT_ERROR_MODEL(model)) {
+                    throw msatError();
+                }
+                return SolverResult.sat(keepModel(model, variables));
+            } else if (status == mathsat.api.MSAT_UNKNOWN) {
+                return SolverResult.unknown(unknownReason());
+            } else {
+                ArrayList<Node> unsatCore = new ArrayList<>();
+                long[] unsatCoreArray = mathsat.api.msat_get_unsat_assumptions(solver);
+                if (unsatCoreArray == null) {
+                    throw msatError();
+                }
+                ArrayList<Long> unsatCoreExprs = new ArrayList<>();
+                unsatCoreExprs.ensureCapacity(unsatCoreArray.length);
+                for (int i = 0; i < unsatCoreArray.length; ++i) {
+                    unsatCoreExprs.add(unsatCoreArray[i]);
+                }
+                for (int i=0; i<assumptionExprs.size(); i++) {
+                    if (unsatCoreExprs.contains(assumptionExprs.get(i))) {
+                        unsatCore.add(assumptions.get(i));
+                    }
                 }
+                return SolverResult.unsat(unsatCore);
             }
-            return Either.right(unsatCore);
+        } finally {
+            endQuery();
         }
     }
 
@@ -146,45 +264,65 @@ public class MathSAT implements Solver, InterpolatingSolver {
         return mathsat.api.msat_make_constant(solver, d);
     }
 
-    private Map<Variable, Constant> getAssignment(long model, VariableMarshaller marshaller) {
-        HashMap<Variable, Constant> assingment = new HashMap<>();
-        for (Variable variable: marshaller.getVariables()) {
-            if (TypeInference.typeOf(variable).equals(IntType.TYPE)) {
-                long result = mathsat.api.msat_model_eval(model, getIntVar(marshaller.toString(variable)));
-                if (mathsat.api.MSAT_ERROR_TERM(result)) {
-                    throw msatError();
-                }
-                if (mathsat.api.msat_term_is_number(solver, result) != 0) {
-                    int value = Integer.parseInt(mathsat.api.msat_term_repr(result));
-                    assingment.put(variable, IntConst.of(value));
-                } else {
-                    throw new RuntimeException("unsupported MathSAT expression type");
-                }
-            } else if (TypeInference.typeOf(variable).equals(BoolType.TYPE)) {
-                long result = mathsat.api.msat_model_eval(model, getBoolVar(marshaller.toString(variable)));
-                if (mathsat.api.MSAT_ERROR_TERM(result)) {
-                    throw msatError();
-                }
-                if (mathsat.api.msat_term_is_true(solver, result) != 0) {
-                    assingment.put(variable, BoolConst.of(true));
-                } else if (mathsat.api.msat_term_is_false(solver, result) != 0) {
-                    assingment.put(variable, BoolConst.of(false));
-                } else {
-                    throw new RuntimeException("wrong variable type");
-                }
-            } else if (TypeInference.typeOf(variable) instanceof BVType) {
-                int size = ((BVType) TypeInference.typeOf(variable)).getSize();
-                long result = mathsat.api.msat_model_eval(model, getBVVar(marshaller.toString(variable), size));
-                if (mathsat.api.msat_term_is_number(solver, result) != 0) {
-                    assingment.put(variable, BVConst.ofLong(convertMathSATNumeral(solver, result), size));
-                } else {
-                    throw new RuntimeException("unsupported MathSAT expression type");
-                }
+    /**
+     * Model handle is kept until the next query, variables are evaluated on demand
+     */
+    private LazyModel keepModel(long model, Set<Variable> variables) {
+        lastModelHandle = model;
+        lastModel = new LazyModel(variables, variable -> evaluate(model, variable));
+        return lastModel;
+    }
+
+    private void releaseModel() {
+        if (lastModel != null) {
+            lastModel.invalidate();
+            lastModel = null;
+        }
+        if (lastModelHandle != 0) {
+            mathsat.api.msat_destroy_model(lastModelHandle);
+            lastModelHandle = 0;
+        }
+    }
+
+    private Constant evaluate(long model, Variable variable) {
+        Long constant = cache.getConstant(cache.getMarshaller().getId(variable));
+        if (constant == null) {
+            throw new RuntimeException("undeclared variable " + variable);
+        }
+        Type type = variable.getType();
+        if (type.equals(IntType.TYPE)) {
+            long result = mathsat.api.msat_model_eval(model, constant);
+            if (mathsat.api.MSAT_ERROR_TERM(result)) {
+                throw msatError();
+            }
+            if (mathsat.api.msat_term_is_number(solver, result) != 0) {
+                return IntConst.of(Integer.parseInt(mathsat.api.msat_term_repr(result)));
             } else {
-                throw new UnsupportedOperationException();
+                throw new RuntimeException("unsupported MathSAT expression type");
+            }
+        } else if (type.equals(BoolType.TYPE)) {
+            long result = mathsat.api.msat_model_eval(model, constant);
+            if (mathsat.api.MSAT_ERROR_TERM(result)) {
+                throw msatError();
+            }
+            if (mathsat.api.msat_term_is_true(solver, result) != 0) {
+                return BoolConst.of(true);
+            } else if (mathsat.api.msat_term_is_false(solver, result) != 0) {
+                return BoolConst.of(false);
+            } else {
+                throw new RuntimeException("wrong variable type");
+            }
+        } else if (type instanceof BVType) {
+            int size = ((BVType) type).getSize();
+            long result = mathsat.api.msat_model_eval(model, constant);
+            if (mathsat.api.msat_term_is_number(solver, result) != 0) {
+                return BVConst.ofLong(convertMathSATNumeral(solver, result), size);
+            } else {
+                throw new RuntimeException("unsupported MathSAT expression type");
             }
+        } else {
+            throw new UnsupportedOperationException();
         }
-        return assingment;
     }
 
     private Long convertMathSATNumeral(long solver, long result) {
@@ -198,115 +336,216 @@ public class MathSAT implements Solver, InterpolatingSolver {
 
     @Override
     public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
-        dispose();
-        reset();
-        VariableMarshaller marshaller = new VariableMarshaller();
-        for (Node clause : clauses) {
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(marshaller);
-            clause.accept(visitor);
-            mathsat.api.msat_assert_formula(solver, visitor.getExpr());
-        }
-
-//        if (logger.isTraceEnabled()) {
-//            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss-SSS");
-//            Date now = new Date();
-//            Path logsmt = Paths.get("cbs" + sdf.format(now) + ".smt2");
-//            try {
-//                List<String> entries = new ArrayList<>();
-//                entries.add("(set-option :produce-models true)");
-//                Set<Long> seenDecls = new HashSet<>();
-//                for (long d : decls) {
-//                    if (seenDecls.add(d)) {
-//                        String n = mathsat.api.msat_decl_get_name(d);
-//                        String tp = "Bool";
-//                        if (mathsat.api.msat_is_integer_type(solver, mathsat.api.msat_decl_get_return_type(d)) != 0) {
-//                            tp = "Int";
-//                        }
-//                        entries.add("(declare-fun |" + n.replace("|", "\\|") + "| () " + tp + ")");
-//                    }
-//                }
-//                long[] assertions = mathsat.api.msat_get_asserted_formulas(solver);
-//                for (int i = 0; i < assertions.length; ++i) {
-//                    String c = mathsat.api.msat_to_smtlib2_term(solver, assertions[i]);
-//                    entries.add("(assert " + c + ")");
-//                }
-//                entries.add("(check-sat)");
-//                entries.add("(get-model)");
-//                Files.write(logsmt, entries, Charset.forName("UTF-8"));
-//            } catch (IOException e) {
-//                e.printStackTrace();
-//            }
-//        }
-
-        int status = mathsat.api.msat_solve(solver);
-        if (status == mathsat.api.MSAT_SAT) {
-            long model = mathsat.api.msat_get_model(solver);
-            if (mathsat.api.MSAT_ERROR_MODEL(model)) {
-                throw msatError();
+        beginQuery(SolverLimits.NONE);
+        try {
+            Set<Variable> variables = new HashSet<>();
+            for (Node clause : clauses) {
+                mathsat.api.msat_assert_formula(solver, translate(clause, variables));
             }
-            try {
-                return Optional.of(getAssignment(model, marshaller));
-            } finally {
-                mathsat.api.msat_destroy_model(model);
+
+            int status = mathsat.api.msat_solve(solver);
+            if (status == mathsat.api.MSAT_SAT) {
+                long model = mathsat.api.msat_get_model(solver);
+                if (mathsat.api.MSAT_ERROR_MODEL(model)) {
+                    throw msatError();
+                }
+                return Optional.of(keepModel(model, variables));
+            } else if (status == mathsat.api.MSAT_UNKNOWN) {
+                throw msatError();
+            } else {
+                return Optional.empty();
             }
-        } else if (status == mathsat.api.MSAT_UNKNOWN) {
-            throw msatError();
-        } else {
-            return Optional.empty();
+        } finally {
+            endQuery();
         }
     }
 
     @Override
     public Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses) {
-        dispose();
-        reset();
+        return getModelOrInterpolant(leftClauses, rightClauses, SolverLimits.NONE).toEither();
+    }
 
-        VariableMarshaller marshaller = new VariableMarshaller();
+    @Override
+    public SolverResult<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses,
+                                                                             List<Node> rightClauses,
+                                                                             SolverLimits limits) {
+        beginQuery(limits);
+        try {
+            Set<Variable> variables = new HashSet<>();
+
+            int groupA = mathsat.api.msat_create_itp_group(solver);
+            int groupB = mathsat.api.msat_create_itp_group(solver);
+
+            mathsat.api.msat_set_itp_group(solver, groupA);
+            for (Node leftClause : leftClauses) {
+                int error = mathsat.api.msat_assert_formula(solver, translate(leftClause, variables));
+                assert (error == 0);
+            }
+
+            mathsat.api.msat_set_itp_group(solver, groupB);
 
-        int groupA = mathsat.api.msat_create_itp_group(solver);
-        int groupB = mathsat.api.msat_create_itp_group(solver);
+            for (Node rightClause : rightClauses) {
+                int error = mathsat.api.msat_assert_formula(solver, translate(rightClause, variables));
+                assert (error == 0);
+            }
 
-        mathsat.api.msat_set_itp_group(solver, groupA);
-        for (Node leftClause : leftClauses) {
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(marshaller);
-            leftClause.accept(visitor);
-            int error = mathsat.api.msat_assert_formula(solver, visitor.getExpr());
-            assert (error == 0);
+            int status = mathsat.api.msat_solve(solver);
+            if (status == mathsat.api.MSAT_SAT) {
+                long model = mathsat.api.msat_get_model(solver);
+                if (mathsat.api.MSAT_ERROR_MODEL(model)) {
+                    throw msatError();
+                }
+                return SolverResult.sat(keepModel(model, variables));
+            } else if (status == mathsat.api.MSAT_UNKNOWN) {
+                return SolverResult.unknown(unknownReason());
+            } else {
+                int[] groupsOfA = {groupA};
+                long interpolant = mathsat.api.msat_get_interpolant(solver, groupsOfA, 1);
+                assert (!mathsat.api.MSAT_ERROR_TERM(interpolant));
+    //            String s = mathsat.api.msat_to_smtlib2_term(solver, interpolant);
+    //            System.out.println("\nOK, the interpolant is: " + s);
+                //TODO: convert to Node
+                //return Either.right(convertMathSATToNode(solver, interpolant, marshaller));
+                return SolverResult.unsat(ProgramVariable.mkBool("<unknown>"));
+            }
+        } finally {
+            endQuery();
+        }
+    }
+
+    @Override
+    public SolverSession openSession() {
+        MathSAT backend = new MathSAT(false);
+        backend.reset();
+        return backend.new Session();
+    }
+
+    /**
+     * Session owns its environment, so declarations and learned clauses survive between checks.
+     * When the cache of the session backend is full, the environment is recreated and all scopes are reasserted.
+     */
+    private class Session implements SolverSession {
+
+        // clauses and their variables asserted in each scope
+        private Stack<List<Node>> clauses;
+        private Stack<Set<Variable>> scopes;
+
+        Session() {
+            this.clauses = new Stack<>();
+            this.clauses.push(new ArrayList<>());
+            this.scopes = new Stack<>();
+            this.scopes.push(new HashSet<>());
+        }
+
+        private void rebuildIfFull() {
+            if (!cache.isFull()) {
+                return;
+            }
+            MathSAT.this.dispose();
+            reset();
+            cache.clear();
+            for (int i = 0; i < clauses.size(); i++) {
+                if (i > 0 && mathsat.api.msat_push_backtrack_point(solver) != 0) {
+                    throw msatError();
+                }
+                Set<Variable> variables = new HashSet<>();
+                for (Node clause : clauses.get(i)) {
+                    if (mathsat.api.msat_assert_formula(solver, translate(clause, variables)) != 0) {
+                        throw msatError();
+                    }
+                }
+                scopes.set(i, variables);
+            }
         }
 
-        mathsat.api.msat_set_itp_group(solver, groupB);
+        @Override
+        public void add(List<Node> clauses) {
+            releaseModel();
+            rebuildIfFull();
+            for (Node clause : clauses) {
+                if (mathsat.api.msat_assert_formula(solver, translate(clause, scopes.peek())) != 0) {
+                    throw msatError();
+                }
+                this.clauses.peek().add(clause);
+            }
+        }
 
-        for (Node rightClause : rightClauses) {
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(marshaller);
-            rightClause.accept(visitor);
-            int error = mathsat.api.msat_assert_formula(solver, visitor.getExpr());
-            assert (error == 0);
+        @Override
+        public void push() {
+            releaseModel();
+            if (mathsat.api.msat_push_backtrack_point(solver) != 0) {
+                throw msatError();
+            }
+            clauses.push(new ArrayList<>());
+            scopes.push(new HashSet<>());
         }
 
-        int status = mathsat.api.msat_solve(solver);
-        if (status == mathsat.api.MSAT_SAT) {
-            long model = mathsat.api.msat_get_model(solver);
-            if (mathsat.api.MSAT_ERROR_MODEL(model)) {
+        @Override
+        public void pop() {
+            if (scopes.size() == 1) {
+                throw new RuntimeException("no scope to pop");
+            }
+            releaseModel();
+            if (mathsat.api.msat_pop_backtrack_point(solver) != 0) {
                 throw msatError();
             }
+            clauses.pop();
+            scopes.pop();
+        }
+
+        @Override
+        public SolverResult<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> assumptions,
+                                                                                SolverLimits limits) {
+            releaseModel();
+            rebuildIfFull();
+            Set<Variable> variables = new HashSet<>();
+            for (Set<Variable> scope : scopes) {
+                variables.addAll(scope);
+            }
+            long[] assumptionArray = new long[assumptions.size()];
+            for (int i = 0; i < assumptions.size(); i++) {
+                assumptionArray[i] = translate(assumptions.get(i), variables);
+            }
+
+            deadline = limits.getTimeout().map(t -> System.currentTimeMillis() + t).orElse(Long.MAX_VALUE);
+            int status;
             try {
-                return Either.left(getAssignment(model, marshaller));
+                status = mathsat.api.msat_solve_with_assumptions(solver, assumptionArray);
+                if (status == mathsat.api.MSAT_UNKNOWN) {
+                    return SolverResult.unknown(unknownReason());
+                }
             } finally {
-                mathsat.api.msat_destroy_model(model);
+                deadline = Long.MAX_VALUE;
+            }
+            if (status == mathsat.api.MSAT_SAT) {
+                long model = mathsat.api.msat_get_model(solver);
+                if (mathsat.api.MSAT_ERROR_MODEL(model)) {
+                    throw msatError();
+                }
+                return SolverResult.sat(keepModel(model, variables));
+            } else {
+                long[] unsatCoreArray = mathsat.api.msat_get_unsat_assumptions(solver);
+                if (unsatCoreArray == null) {
+                    throw msatError();
+                }
+                Set<Long> unsatCoreExprs = new HashSet<>();
+                for (long expr : unsatCoreArray) {
+                    unsatCoreExprs.add(expr);
+                }
+                ArrayList<Node> unsatCore = new ArrayList<>();
+                for (int i = 0; i < assumptionArray.length; i++) {
+                    if (unsatCoreExprs.contains(assumptionArray[i])) {
+                        unsatCore.add(assumptions.get(i));
+                    }
+                }
+                return SolverResult.unsat(unsatCore);
             }
-        } else if (status == mathsat.api.MSAT_UNKNOWN) {
-            throw msatError();
-        } else {
-            int[] groupsOfA = {groupA};
-            long interpolant = mathsat.api.msat_get_interpolant(solver, groupsOfA, 1);
-            assert (!mathsat.api.MSAT_ERROR_TERM(interpolant));
-//            String s = mathsat.api.msat_to_smtlib2_term(solver, interpolant);
-//            System.out.println("\nOK, the interpolant is: " + s);
-            //TODO: convert to Node
-            //return Either.right(convertMathSATToNode(solver, interpolant, marshaller));
-            return Either.right(ProgramVariable.mkBool("<unknown>"));
         }
 
+        @Override
+        public void dispose() {
+            MathSAT.this.dispose();
+        }
     }
 
     private long[] getArgs(long expr) {
@@ -434,11 +673,17 @@ public class MathSAT implements Solver, InterpolatingSolver {
 
         private Stack<Long> exprs;
 
+        private Set<Variable> variables;
+
+        private TranslationCache<Long> cache;
+
         private VariableMarshaller marshaller;
 
-        NodeTranslatorVisitor(VariableMarshaller marshaller) {
-            this.marshaller = marshaller;
+        NodeTranslatorVisitor(TranslationCache<Long> cache) {
+            this.cache = cache;
+            this.marshaller = cache.getMarshaller();
             this.exprs = new Stack<>();
+            this.variables = new HashSet<>();
         }
 
         long getExpr() {
@@ -446,17 +691,31 @@ public class MathSAT implements Solver, InterpolatingSolver {
             return exprs.peek();
         }
 
+        Set<Variable> getVariables() {
+            return variables;
+        }
+
         private void processVariable(Variable variable) {
-            if (TypeInference.typeOf(variable).equals(IntType.TYPE)) {
-                pushExpr(getIntVar(marshaller.toString(variable)));
-            } else if (TypeInference.typeOf(variable).equals(BoolType.TYPE)) {
-                pushExpr(getBoolVar(marshaller.toString(variable)));
-            }else if (TypeInference.typeOf(variable) instanceof BVType) {
-                int size = ((BVType) TypeInference.typeOf(variable)).getSize();
-                pushExpr(getBVVar(marshaller.toString(variable), size));
+            variables.add(variable);
+            int id = marshaller.getId(variable);
+            Long cached = cache.getConstant(id);
+            if (cached != null) {
+                pushExpr(cached);
+                return;
+            }
+            long expr;
+            Type type = variable.getType();
+            if (type.equals(IntType.TYPE)) {
+                expr = getIntVar(marshaller.toString(id));
+            } else if (type.equals(BoolType.TYPE)) {
+                expr = getBoolVar(marshaller.toString(id));
+            } else if (type instanceof BVType) {
+                expr = getBVVar(marshaller.toString(id), ((BVType) type).getSize());
             } else {
                 throw new UnsupportedOperationException();
             }
+            pushExpr(expr);
+            cache.putConstant(id, expr);
         }
 
         private void pushExpr(long e) {
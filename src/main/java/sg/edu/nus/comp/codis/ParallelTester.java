@@ -0,0 +1,180 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Parameter;
+import sg.edu.nus.comp.codis.ast.Program;
+import sg.edu.nus.comp.codis.ast.TestCase;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Checks tests in parallel on a fork-join pool. Each chunk of tests is checked by a {@link Tester} taken from
+ * a pool of idle testers, so there are no more testers than chunks checked at the same time. Each tester has
+ * its own solver from the factory, so the factory should build a new backend or return a thread-safe one such
+ * as {@link SolverPool}.
+ */
+public class ParallelTester {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8;
+
+    private ForkJoinPool pool;
+
+    private int chunkSize;
+
+    private Supplier<Solver> solvers;
+
+    private Queue<Tester> idle;
+
+    private List<Tester> created;
+
+    private SolverLimits limits;
+
+    public ParallelTester(Supplier<Solver> solvers, int threads, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunk size must be positive");
+        }
+        this.pool = new ForkJoinPool(threads);
+        this.chunkSize = chunkSize;
+        this.solvers = solvers;
+        this.created = new ArrayList<>();
+        this.limits = SolverLimits.NONE;
+        this.idle = new ConcurrentLinkedQueue<>();
+    }
+
+    public ParallelTester(Supplier<Solver> solvers) {
+        this(solvers, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    private Tester acquire() {
+        Tester tester = idle.poll();
+        if (tester != null) {
+            return tester;
+        }
+        tester = new Tester(solvers.get());
+        synchronized (created) {
+            tester.setLimits(limits);
+            created.add(tester);
+        }
+        return tester;
+    }
+
+    public void setLimits(SolverLimits limits) {
+        synchronized (created) {
+            this.limits = limits;
+            for (Tester tester : created) {
+                tester.setLimits(limits);
+            }
+        }
+    }
+
+    public int getThreads() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Checks the tests with given indices. Failing tests, including undecided ones, are added to failing.
+     *
+     * @param firstOnly stop after the first test that is decided to fail
+     */
+    public void test(Program program,
+                     Map<Parameter, Constant> parameterValuation,
+                     List<TestCase> tests,
+                     int[] indices,
+                     BitSet failing,
+                     BitSet undecided,
+                     boolean firstOnly) {
+        AtomicBoolean found = new AtomicBoolean(false);
+        pool.invoke(new Chunk(program, parameterValuation, tests, indices, 0, indices.length,
+                              failing, undecided, firstOnly ? found : null));
+    }
+
+    /**
+     * Waits for running checks and disposes sessions of all testers
+     */
+    public void shutdown() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        idle.clear();
+        synchronized (created) {
+            for (Tester tester : created) {
+                tester.dispose();
+            }
+            created.clear();
+        }
+    }
+
+    private class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private Program program;
+        private Map<Parameter, Constant> parameterValuation;
+        private List<TestCase> tests;
+        private int[] indices;
+        private int from;
+        private int to;
+        private BitSet failing;
+        private BitSet undecided;
+        private AtomicBoolean found;
+
+        Chunk(Program program, Map<Parameter, Constant> parameterValuation, List<TestCase> tests, int[] indices,
+              int from, int to, BitSet failing, BitSet undecided, AtomicBoolean found) {
+            this.program = program;
+            this.parameterValuation = parameterValuation;
+            this.tests = tests;
+            this.indices = indices;
+            this.from = from;
+            this.to = to;
+            this.failing = failing;
+            this.undecided = undecided;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > chunkSize) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Chunk(program, parameterValuation, tests, indices, from, middle, failing, undecided, found),
+                          new Chunk(program, parameterValuation, tests, indices, middle, to, failing, undecided, found));
+                return;
+            }
+            Tester tester = acquire();
+            try {
+                check(tester);
+            } finally {
+                idle.add(tester);
+            }
+        }
+
+        private void check(Tester tester) {
+            for (int i = from; i < to; i++) {
+                if (found != null && found.get()) {
+                    return;
+                }
+                int index = indices[i];
+                Optional<Boolean> passing = tester.test(program, parameterValuation, tests.get(index));
+                if (passing.isPresent() && passing.get()) {
+                    continue;
+                }
+                synchronized (failing) {
+                    failing.set(index);
+                    if (!passing.isPresent()) {
+                        undecided.set(index);
+                    }
+                }
+                if (found != null && passing.isPresent()) {
+                    found.set(true);
+                }
+            }
+        }
+    }
+}
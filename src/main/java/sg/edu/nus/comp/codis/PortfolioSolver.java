@@ -0,0 +1,217 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Submits each query to all backends in parallel and returns the first result,
+ * the remaining backends are interrupted.
+ */
+public class PortfolioSolver implements Solver, InterpolatingSolver {
+
+    private Logger logger = LoggerFactory.getLogger(PortfolioSolver.class);
+
+    private Map<String, Solver> solvers;
+    private Map<String, InterpolatingSolver> interpolatingSolvers;
+
+    private ExecutorService executor;
+
+    private AtomicLong races;
+    private Map<String, AtomicLong> wins;
+
+    public PortfolioSolver(Map<String, Solver> solvers, Map<String, InterpolatingSolver> interpolatingSolvers) {
+        this.solvers = new LinkedHashMap<>(solvers);
+        this.interpolatingSolvers = new LinkedHashMap<>(interpolatingSolvers);
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "portfolio");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.races = new AtomicLong(0);
+        this.wins = new ConcurrentHashMap<>();
+        for (String name : solvers.keySet()) {
+            wins.put(name, new AtomicLong(0));
+        }
+        for (String name : interpolatingSolvers.keySet()) {
+            wins.put(name, new AtomicLong(0));
+        }
+    }
+
+    public static Solver buildSolver() {
+        Map<String, Solver> solvers = new LinkedHashMap<>();
+        solvers.put("z3", Z3.buildSolver());
+        solvers.put("mathsat", MathSAT.buildSolver());
+        return new PortfolioSolver(solvers, new HashMap<>());
+    }
+
+    public static InterpolatingSolver buildInterpolatingSolver() {
+        Map<String, InterpolatingSolver> solvers = new LinkedHashMap<>();
+        solvers.put("z3", Z3.buildInterpolatingSolver());
+        solvers.put("mathsat", MathSAT.buildInterpolatingSolver());
+        return new PortfolioSolver(new HashMap<>(), solvers);
+    }
+
+    /**
+     * Query of a single backend. Backends are not thread-safe, so a query waits until the interrupted
+     * query of the previous race has stopped.
+     */
+    private static class Entrant<B, R> implements Callable<R> {
+        private String name;
+        private B backend;
+        private Function<B, R> query;
+
+        private boolean started = false;
+        private boolean finished = false;
+        private boolean cancelled = false;
+
+        Entrant(String name, B backend, Function<B, R> query) {
+            this.name = name;
+            this.backend = backend;
+            this.query = query;
+        }
+
+        @Override
+        public R call() {
+            synchronized (backend) {
+                synchronized (this) {
+                    if (cancelled) {
+                        throw new CancellationException();
+                    }
+                    // cleared before publishing started, so that an interrupt from cancel() is not lost
+                    if (backend instanceof Interruptible) {
+                        ((Interruptible) backend).resetInterrupt();
+                    }
+                    started = true;
+                }
+                try {
+                    return query.apply(backend);
+                } finally {
+                    synchronized (this) {
+                        finished = true;
+                    }
+                }
+            }
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (started && !finished && backend instanceof Interruptible) {
+                ((Interruptible) backend).interrupt();
+            }
+        }
+    }
+
+    private <B, R> R race(Map<String, B> backends, Function<B, R> query) {
+        return race(backends, query, result -> true);
+    }
+
+    /**
+     * Undecided results (e.g. UNKNOWN) do not win the race, one of them is returned only if no backend decides
+     */
+    private <B, R> R race(Map<String, B> backends, Function<B, R> query, Predicate<R> decided) {
+        if (backends.isEmpty()) {
+            throw new UnsupportedOperationException("no backends for this query");
+        }
+        CompletionService<R> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<R>, Entrant<B, R>> entrants = new HashMap<>();
+        for (Map.Entry<String, B> backend : backends.entrySet()) {
+            Entrant<B, R> entrant = new Entrant<>(backend.getKey(), backend.getValue(), query);
+            entrants.put(completion.submit(entrant), entrant);
+        }
+        RuntimeException failure = null;
+        R undecided = null;
+        try {
+            for (int i = 0; i < entrants.size(); i++) {
+                Future<R> future = completion.take();
+                try {
+                    R result = future.get();
+                    if (!decided.test(result)) {
+                        logger.debug(entrants.get(future).name + " undecided: " + result);
+                        undecided = result;
+                        continue;
+                    }
+                    String winner = entrants.get(future).name;
+                    races.incrementAndGet();
+                    wins.get(winner).incrementAndGet();
+                    logger.debug("portfolio won by " + winner);
+                    return result;
+                } catch (ExecutionException e) {
+                    logger.warn(entrants.get(future).name + " failed: " + e.getCause());
+                    if (e.getCause() instanceof RuntimeException) {
+                        failure = (RuntimeException) e.getCause();
+                    } else {
+                        failure = new RuntimeException(e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("portfolio query interrupted");
+        } finally {
+            for (Entrant<B, R> entrant : entrants.values()) {
+                entrant.cancel();
+            }
+        }
+        if (undecided != null) {
+            return undecided;
+        }
+        throw failure;
+    }
+
+    /**
+     * Fraction of races won by each backend
+     */
+    public Map<String, Double> getWinRates() {
+        Map<String, Double> rates = new LinkedHashMap<>();
+        long total = races.get();
+        for (Map.Entry<String, AtomicLong> entry : wins.entrySet()) {
+            rates.put(entry.getKey(), total == 0 ? 0.0 : (double) entry.getValue().get() / total);
+        }
+        return rates;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // models are materialized while the backend is held, it can be queried by the next race
+    @Override
+    public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+        return race(solvers, s -> LazyModel.materialize(s.getModelOrCore(clauses, assumptions)));
+    }
+
+    @Override
+    public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+        return race(solvers, s -> LazyModel.materialize(s.getModel(clauses)));
+    }
+
+    @Override
+    public Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses) {
+        return race(interpolatingSolvers, s -> LazyModel.materialize(s.getModelOrInterpolant(leftClauses, rightClauses)));
+    }
+
+    @Override
+    public SolverResult<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses,
+                                                                            List<Node> assumptions,
+                                                                            SolverLimits limits) {
+        return race(solvers, s -> LazyModel.materialize(s.getModelOrCore(clauses, assumptions, limits)), r -> !r.isUnknown());
+    }
+
+    @Override
+    public SolverResult<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses,
+                                                                             List<Node> rightClauses,
+                                                                             SolverLimits limits) {
+        return race(interpolatingSolvers, s -> LazyModel.materialize(s.getModelOrInterpolant(leftClauses, rightClauses, limits)),
+                r -> !r.isUnknown());
+    }
+}
@@ -0,0 +1,646 @@
+package sg.edu.nus.comp.codis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Compiles program semantics into JVM classes implementing {@link CompiledProgram.Kernel}. The generated
+ * source is compiled in memory with the system Java compiler, when it is not available (e.g. on a JRE) or
+ * compilation fails the program is executed as a tree of closures.
+ *
+ * Bit-vector operators follow SMT-LIB semantics. Integers are 64-bit, integer division by zero gives 0.
+ * Compiled programs are cached by their semantics.
+ */
+public class ProgramCompiler {
+
+    private Logger logger = LoggerFactory.getLogger(ProgramCompiler.class);
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private static final String PACKAGE = "sg.edu.nus.comp.codis.compiled";
+
+    private static final int INT = -1;
+    private static final int BOOL = 0;
+
+    private static final AtomicLong classes = new AtomicLong(0);
+
+    private int capacity;
+
+    private LinkedHashMap<Node, CompiledProgram> cache;
+
+    private boolean bytecode;
+
+    public ProgramCompiler(int capacity) {
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<Node, CompiledProgram>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Node, CompiledProgram> eldest) {
+                return size() > ProgramCompiler.this.capacity;
+            }
+        };
+        this.bytecode = true;
+    }
+
+    public ProgramCompiler() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Disabling bytecode generation makes all programs run as closures
+     */
+    public void setBytecode(boolean bytecode) {
+        this.bytecode = bytecode;
+    }
+
+    public CompiledProgram compile(Program program, Map<Parameter, Constant> parameterValuation) {
+        return compile(program.getSemantics(parameterValuation));
+    }
+
+    public CompiledProgram compile(Node semantics) {
+        synchronized (cache) {
+            CompiledProgram cached = cache.get(semantics);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        CompiledProgram compiled = doCompile(semantics);
+        synchronized (cache) {
+            cache.put(semantics, compiled);
+        }
+        return compiled;
+    }
+
+    public int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private CompiledProgram doCompile(Node semantics) {
+        List<ProgramVariable> inputs = new ArrayList<>(Traverse.collectByType(semantics, ProgramVariable.class));
+        inputs.sort(Comparator.comparing(ProgramVariable::getName));
+        Type outputType = TypeInference.typeOf(semantics);
+
+        String className = "Program" + classes.incrementAndGet();
+        CodeVisitor visitor = new CodeVisitor(inputs);
+        semantics.accept(visitor);
+        if (bytecode) {
+            Optional<CompiledProgram.Kernel> kernel = load(className, visitor.getSource(className));
+            if (kernel.isPresent()) {
+                return new CompiledProgram(inputs, outputType, kernel.get(), true);
+            }
+        }
+        return new CompiledProgram(inputs, outputType, visitor.getClosure(), false);
+    }
+
+    private Optional<CompiledProgram.Kernel> load(String className, String source) {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null) {
+            logger.debug("system Java compiler is not available");
+            return Optional.empty();
+        }
+        String qualifiedName = PACKAGE + "." + className;
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///" + qualifiedName.replace('.', '/') + ".java"),
+                                                       JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        List<String> options = Arrays.asList("-classpath", classpath(), "-g:none", "-nowarn");
+        // closing the forwarding manager also closes the standard one
+        try (MemoryFileManager fileManager = new MemoryFileManager(javac.getStandardFileManager(null, null, null))) {
+            boolean success = javac.getTask(null, fileManager, diagnostics, options, null,
+                                            Collections.singletonList(file)).call();
+            if (!success) {
+                logger.debug("failed to compile program: " + diagnostics.getDiagnostics());
+                return Optional.empty();
+            }
+            byte[] bytes = fileManager.getBytes(qualifiedName);
+            Class<?> kernelClass = new ByteClassLoader(CompiledProgram.Kernel.class.getClassLoader())
+                    .define(qualifiedName, bytes);
+            return Optional.of((CompiledProgram.Kernel) kernelClass.getDeclaredConstructor().newInstance());
+        } catch (IOException | ReflectiveOperationException | RuntimeException | LinkageError e) {
+            logger.debug("failed to load compiled program: " + e);
+            return Optional.empty();
+        }
+    }
+
+    private static String classpath() {
+        String classpath = System.getProperty("java.class.path");
+        try {
+            String location = new File(CompiledProgram.Kernel.class.getProtectionDomain()
+                    .getCodeSource().getLocation().toURI()).getPath();
+            return location + File.pathSeparator + classpath;
+        } catch (Exception e) {
+            return classpath;
+        }
+    }
+
+    private static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private Map<String, ByteArrayOutputStream> outputs = new HashMap<>();
+
+        MemoryFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) {
+            return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    ByteArrayOutputStream output = new ByteArrayOutputStream();
+                    outputs.put(className, output);
+                    return output;
+                }
+            };
+        }
+
+        byte[] getBytes(String className) {
+            return outputs.get(className).toByteArray();
+        }
+    }
+
+    private static class ByteClassLoader extends ClassLoader {
+        ByteClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static class Term {
+        private String code;
+        private int kind;
+        private CompiledProgram.Kernel closure;
+
+        Term(String code, int kind, CompiledProgram.Kernel closure) {
+            this.code = code;
+            this.kind = kind;
+            this.closure = closure;
+        }
+    }
+
+    /**
+     * Builds both the source of the generated method, one local per node, and the equivalent closures
+     */
+    private static class CodeVisitor implements BottomUpVisitor {
+
+        private Map<ProgramVariable, Integer> indices;
+
+        private Stack<Term> terms;
+
+        private StringBuilder body;
+
+        private int locals;
+
+        CodeVisitor(List<ProgramVariable> inputs) {
+            this.indices = new HashMap<>();
+            for (int i = 0; i < inputs.size(); i++) {
+                indices.put(inputs.get(i), i);
+            }
+            this.terms = new Stack<>();
+            this.body = new StringBuilder();
+            this.locals = 0;
+        }
+
+        String getSource(String className) {
+            assert terms.size() == 1;
+            return "package " + PACKAGE + ";\n" +
+                    "public final class " + className + " extends " +
+                    CompiledProgram.GeneratedKernel.class.getCanonicalName() + " {\n" +
+                    "    public long apply(long[] in) {\n" +
+                    body +
+                    "        return " + terms.peek().code + ";\n" +
+                    "    }\n" +
+                    "}\n";
+        }
+
+        CompiledProgram.Kernel getClosure() {
+            assert terms.size() == 1;
+            return terms.peek().closure;
+        }
+
+        private int topKind() {
+            return terms.peek().kind;
+        }
+
+        private void emit(int kind, String code, CompiledProgram.Kernel closure) {
+            String local = "t" + locals++;
+            body.append("        long ").append(local).append(" = ").append(code).append(";\n");
+            terms.push(new Term(local, kind, closure));
+        }
+
+        private void unary(int kind, String format, LongUnaryOperator operator) {
+            Term arg = terms.pop();
+            CompiledProgram.Kernel a = arg.closure;
+            emit(kind, String.format(format, arg.code), in -> operator.applyAsLong(a.apply(in)));
+        }
+
+        private void binary(int kind, String format, LongBinaryOperator operator) {
+            Term right = terms.pop();
+            Term left = terms.pop();
+            CompiledProgram.Kernel l = left.closure;
+            CompiledProgram.Kernel r = right.closure;
+            emit(kind, String.format(format, left.code, right.code),
+                 in -> operator.applyAsLong(l.apply(in), r.apply(in)));
+        }
+
+        private void constant(long value, int kind) {
+            terms.push(new Term("(" + value + "L)", kind, in -> value));
+        }
+
+        private void processVariable(Variable variable) {
+            Integer index = indices.get(variable);
+            if (index == null) {
+                throw new UnsupportedOperationException("cannot compile variable " + variable);
+            }
+            Type type = variable.getType();
+            int kind;
+            if (type.equals(IntType.TYPE)) {
+                kind = INT;
+            } else if (type.equals(BoolType.TYPE)) {
+                kind = BOOL;
+            } else if (type instanceof BVType) {
+                kind = ((BVType) type).getSize();
+            } else {
+                throw new UnsupportedOperationException();
+            }
+            int i = index;
+            terms.push(new Term("in[" + i + "]", kind, in -> in[i]));
+        }
+
+        private void unsupported(Node node) {
+            throw new UnsupportedOperationException("cannot compile " + node);
+        }
+
+        private static long bool(boolean value) {
+            return value ? 1 : 0;
+        }
+
+        private void bvBinary(String operator, LongBinaryOperator unmasked) {
+            int width = topKind();
+            long mask = Arithmetic.mask(width);
+            binary(width, "(%s " + operator + " %s) & " + mask + "L", (a, b) -> unmasked.applyAsLong(a, b) & mask);
+        }
+
+        private void bvCall(String function, LongBinaryOperator operator) {
+            int width = topKind();
+            binary(width, function + "(%s, %s, " + width + ")", operator);
+        }
+
+        private void signedCompare(String operator, LongBinaryOperator compare) {
+            int width = topKind();
+            binary(BOOL, "signed(%s, " + width + ") " + operator + " signed(%s, " + width + ") ? 1L : 0L",
+                   (a, b) -> compare.applyAsLong(Arithmetic.signed(a, width), Arithmetic.signed(b, width)));
+        }
+
+        private void unsignedCompare(String operator, LongBinaryOperator compare) {
+            binary(BOOL, "Long.compareUnsigned(%s, %s) " + operator + " 0 ? 1L : 0L",
+                   (a, b) -> compare.applyAsLong(Long.compareUnsigned(a, b), 0));
+        }
+
+        @Override
+        public void visit(ProgramVariable programVariable) {
+            processVariable(programVariable);
+        }
+
+        @Override
+        public void visit(Location location) {
+            unsupported(location);
+        }
+
+        @Override
+        public void visit(UIFApplication UIFApplication) {
+            unsupported(UIFApplication);
+        }
+
+        @Override
+        public void visit(Equal equal) {
+            binary(BOOL, "%s == %s ? 1L : 0L", (a, b) -> bool(a == b));
+        }
+
+        @Override
+        public void visit(Add add) {
+            binary(INT, "%s + %s", (a, b) -> a + b);
+        }
+
+        @Override
+        public void visit(Sub sub) {
+            binary(INT, "%s - %s", (a, b) -> a - b);
+        }
+
+        @Override
+        public void visit(Mult mult) {
+            binary(INT, "%s * %s", (a, b) -> a * b);
+        }
+
+        @Override
+        public void visit(Div div) {
+            binary(INT, "%2$s == 0 ? 0L : div(%1$s, %2$s)", (a, b) -> b == 0 ? 0 : Arithmetic.div(a, b));
+        }
+
+        @Override
+        public void visit(And and) {
+            binary(BOOL, "%s & %s", (a, b) -> a & b);
+        }
+
+        @Override
+        public void visit(Or or) {
+            binary(BOOL, "%s | %s", (a, b) -> a | b);
+        }
+
+        @Override
+        public void visit(Iff iff) {
+            binary(BOOL, "%s == %s ? 1L : 0L", (a, b) -> bool(a == b));
+        }
+
+        @Override
+        public void visit(Impl impl) {
+            binary(BOOL, "(%s ^ 1L) | %s", (a, b) -> (a ^ 1) | b);
+        }
+
+        @Override
+        public void visit(Greater greater) {
+            binary(BOOL, "%s > %s ? 1L : 0L", (a, b) -> bool(a > b));
+        }
+
+        @Override
+        public void visit(Less less) {
+            binary(BOOL, "%s < %s ? 1L : 0L", (a, b) -> bool(a < b));
+        }
+
+        @Override
+        public void visit(GreaterOrEqual greaterOrEqual) {
+            binary(BOOL, "%s >= %s ? 1L : 0L", (a, b) -> bool(a >= b));
+        }
+
+        @Override
+        public void visit(LessOrEqual lessOrEqual) {
+            binary(BOOL, "%s <= %s ? 1L : 0L", (a, b) -> bool(a <= b));
+        }
+
+        @Override
+        public void visit(Minus minus) {
+            unary(INT, "-%s", a -> -a);
+        }
+
+        @Override
+        public void visit(Not not) {
+            unary(BOOL, "%s ^ 1L", a -> a ^ 1);
+        }
+
+        @Override
+        public void visit(IntConst intConst) {
+            constant(intConst.getValue(), INT);
+        }
+
+        @Override
+        public void visit(BoolConst boolConst) {
+            constant(bool(boolConst.getValue()), BOOL);
+        }
+
+        @Override
+        public void visit(ComponentInput componentInput) {
+            unsupported(componentInput);
+        }
+
+        @Override
+        public void visit(ComponentOutput componentOutput) {
+            unsupported(componentOutput);
+        }
+
+        @Override
+        public void visit(TestInstance testInstance) {
+            unsupported(testInstance);
+        }
+
+        @Override
+        public void visit(Parameter parameter) {
+            unsupported(parameter);
+        }
+
+        @Override
+        public void visit(Hole hole) {
+            unsupported(hole);
+        }
+
+        @Override
+        public void visit(ITE ite) {
+            Term elseBranch = terms.pop();
+            Term thenBranch = terms.pop();
+            Term condition = terms.pop();
+            CompiledProgram.Kernel c = condition.closure;
+            CompiledProgram.Kernel t = thenBranch.closure;
+            CompiledProgram.Kernel e = elseBranch.closure;
+            emit(thenBranch.kind, condition.code + " != 0 ? " + thenBranch.code + " : " + elseBranch.code,
+                 in -> c.apply(in) != 0 ? t.apply(in) : e.apply(in));
+        }
+
+        @Override
+        public void visit(Selector selector) {
+            unsupported(selector);
+        }
+
+        @Override
+        public void visit(BVConst bvConst) {
+            int width = bvConst.getType().getSize();
+            constant(bvConst.getLong() & Arithmetic.mask(width), width);
+        }
+
+        @Override
+        public void visit(BVAdd bvAdd) {
+            bvBinary("+", (a, b) -> a + b);
+        }
+
+        @Override
+        public void visit(BVAnd bvAnd) {
+            bvBinary("&", (a, b) -> a & b);
+        }
+
+        @Override
+        public void visit(BVMult bvMult) {
+            bvBinary("*", (a, b) -> a * b);
+        }
+
+        @Override
+        public void visit(BVNeg bvNeg) {
+            int width = topKind();
+            long mask = Arithmetic.mask(width);
+            unary(width, "-%s & " + mask + "L", a -> -a & mask);
+        }
+
+        @Override
+        public void visit(BVNot bvNot) {
+            int width = topKind();
+            long mask = Arithmetic.mask(width);
+            unary(width, "~%s & " + mask + "L", a -> ~a & mask);
+        }
+
+        @Override
+        public void visit(BVOr bvOr) {
+            bvBinary("|", (a, b) -> a | b);
+        }
+
+        @Override
+        public void visit(BVShiftLeft bvShiftLeft) {
+            int width = topKind();
+            bvCall("shl", (a, b) -> Arithmetic.shl(a, b, width));
+        }
+
+        @Override
+        public void visit(BVSignedDiv bvSignedDiv) {
+            int width = topKind();
+            bvCall("sdiv", (a, b) -> Arithmetic.sdiv(a, b, width));
+        }
+
+        @Override
+        public void visit(BVSignedGreater bvSignedGreater) {
+            signedCompare(">", (a, b) -> bool(a > b));
+        }
+
+        @Override
+        public void visit(BVSignedGreaterOrEqual bvSignedGreaterOrEqual) {
+            signedCompare(">=", (a, b) -> bool(a >= b));
+        }
+
+        @Override
+        public void visit(BVSignedLess bvSignedLess) {
+            signedCompare("<", (a, b) -> bool(a < b));
+        }
+
+        @Override
+        public void visit(BVSignedLessOrEqual bvSignedLessOrEqual) {
+            signedCompare("<=", (a, b) -> bool(a <= b));
+        }
+
+        @Override
+        public void visit(BVSignedModulo bvSignedModulo) {
+            int width = topKind();
+            bvCall("smod", (a, b) -> Arithmetic.smod(a, b, width));
+        }
+
+        @Override
+        public void visit(BVSignedRemainder bvSignedRemainder) {
+            int width = topKind();
+            bvCall("srem", (a, b) -> Arithmetic.srem(a, b, width));
+        }
+
+        @Override
+        public void visit(BVSignedShiftRight bvSignedShiftRight) {
+            int width = topKind();
+            bvCall("ashr", (a, b) -> Arithmetic.ashr(a, b, width));
+        }
+
+        @Override
+        public void visit(BVSub bvSub) {
+            bvBinary("-", (a, b) -> a - b);
+        }
+
+        @Override
+        public void visit(BVUnsignedDiv bvUnsignedDiv) {
+            int width = topKind();
+            bvCall("udiv", (a, b) -> Arithmetic.udiv(a, b, width));
+        }
+
+        @Override
+        public void visit(BVUnsignedGreater bvUnsignedGreater) {
+            unsignedCompare(">", (a, b) -> bool(a > b));
+        }
+
+        @Override
+        public void visit(BVUnsignedGreaterOrEqual bvUnsignedGreaterOrEqual) {
+            unsignedCompare(">=", (a, b) -> bool(a >= b));
+        }
+
+        @Override
+        public void visit(BVUnsignedLess bvUnsignedLess) {
+            unsignedCompare("<", (a, b) -> bool(a < b));
+        }
+
+        @Override
+        public void visit(BVUnsignedLessOrEqual bvUnsignedLessOrEqual) {
+            unsignedCompare("<=", (a, b) -> bool(a <= b));
+        }
+
+        @Override
+        public void visit(BVUnsignedRemainder bvUnsignedRemainder) {
+            int width = topKind();
+            binary(width, "urem(%s, %s)", Arithmetic::urem);
+        }
+
+        @Override
+        public void visit(BVUnsignedShiftRight bvUnsignedShiftRight) {
+            int width = topKind();
+            bvCall("lshr", (a, b) -> Arithmetic.lshr(a, b, width));
+        }
+
+        @Override
+        public void visit(BranchOutput branchOutput) {
+            unsupported(branchOutput);
+        }
+
+        @Override
+        public void visit(BVNand bvNand) {
+            bvBinary("&", (a, b) -> a & b);
+            int width = topKind();
+            long mask = Arithmetic.mask(width);
+            unary(width, "~%s & " + mask + "L", a -> ~a & mask);
+        }
+
+        @Override
+        public void visit(BVXor bvXor) {
+            bvBinary("^", (a, b) -> a ^ b);
+        }
+
+        @Override
+        public void visit(BVNor bvNor) {
+            bvBinary("|", (a, b) -> a | b);
+            int width = topKind();
+            long mask = Arithmetic.mask(width);
+            unary(width, "~%s & " + mask + "L", a -> ~a & mask);
+        }
+
+        @Override
+        public void visit(BVXnor bvXnor) {
+            bvBinary("^", (a, b) -> a ^ b);
+            int width = topKind();
+            long mask = Arithmetic.mask(width);
+            unary(width, "~%s & " + mask + "L", a -> ~a & mask);
+        }
+
+        @Override
+        public void visit(ProgramOutput programOutput) {
+            unsupported(programOutput);
+        }
+
+        @Override
+        public void visit(Dummy dummy) {
+            unsupported(dummy);
+        }
+
+        @Override
+        public void visit(Indexed indexed) {
+            unsupported(indexed);
+        }
+    }
+
+}
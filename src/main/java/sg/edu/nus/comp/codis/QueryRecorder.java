@@ -0,0 +1,193 @@
+package sg.edu.nus.comp.codis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.UIF;
+import sg.edu.nus.comp.codis.ast.theory.UIFApplication;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes solver queries as SMT-LIB2 scripts to rolling gzip files. Queries are printed on a background
+ * thread, when its queue is full queries are dropped rather than delaying the solver.
+ *
+ * Each query is a push/pop block preceded by a comment with its backend, status and time.
+ */
+public class QueryRecorder implements Closeable {
+
+    private Logger logger = LoggerFactory.getLogger(QueryRecorder.class);
+
+    public enum Kind { CHECK, INTERPOLATE }
+
+    public static final String HEADER = "; query ";
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private Path directory;
+    private String prefix;
+    private int queriesPerFile;
+
+    private ThreadPoolExecutor writer;
+
+    // accessed only by the writer thread
+    private Writer out;
+    private int fileIndex;
+    private int queriesInFile;
+
+    private AtomicLong ids;
+    private AtomicLong recorded;
+    private AtomicLong dropped;
+
+    public QueryRecorder(Path directory, String prefix, int queriesPerFile, int queueCapacity) {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.queriesPerFile = queriesPerFile;
+        this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "query-recorder");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> dropped.incrementAndGet());
+        this.out = null;
+        this.fileIndex = 0;
+        this.queriesInFile = 0;
+        this.ids = new AtomicLong(0);
+        this.recorded = new AtomicLong(0);
+        this.dropped = new AtomicLong(0);
+    }
+
+    public QueryRecorder(Path directory) {
+        this(directory, "queries", 1000, 10000);
+    }
+
+    /**
+     * @param first clauses or left clauses of interpolation
+     * @param second assumptions or right clauses of interpolation
+     */
+    public void record(String backend, Kind kind, List<Node> first, List<Node> second, String status, long nanos) {
+        long id = ids.incrementAndGet();
+        List<Node> firstCopy = new ArrayList<>(first);
+        List<Node> secondCopy = new ArrayList<>(second);
+        writer.execute(() -> write(print(id, backend, kind, firstCopy, secondCopy, status, nanos)));
+    }
+
+    static String print(long id, String backend, Kind kind, List<Node> first, List<Node> second, String status, long nanos) {
+        VariableMarshaller marshaller = new VariableMarshaller();
+        Set<UIF> functions = new LinkedHashSet<>();
+        List<String> commands = new ArrayList<>();
+        if (kind == Kind.CHECK) {
+            for (Node clause : first) {
+                commands.add("(assert " + printTerm(clause, marshaller, functions) + ")");
+            }
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < second.size(); i++) {
+                names.add("a" + i);
+                commands.add("(define-fun a" + i + " () Bool " + printTerm(second.get(i), marshaller, functions) + ")");
+            }
+            if (names.isEmpty()) {
+                commands.add("(check-sat)");
+            } else {
+                commands.add("(check-sat-assuming (" + String.join(" ", names) + "))");
+            }
+        } else {
+            for (Node clause : first) {
+                commands.add("(assert (! " + printTerm(clause, marshaller, functions) + " :interpolation-group A))");
+            }
+            for (Node clause : second) {
+                commands.add("(assert (! " + printTerm(clause, marshaller, functions) + " :interpolation-group B))");
+            }
+            commands.add("(check-sat)");
+            commands.add("(get-interpolant (A))");
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append(HEADER).append(id)
+                .append(" kind=").append(kind.toString().toLowerCase())
+                .append(" backend=").append(backend)
+                .append(" status=").append(status)
+                .append(" time_ms=").append(String.format(Locale.ROOT, "%.3f", nanos / 1e6))
+                .append('\n');
+        builder.append("(push 1)\n");
+        for (UIF function : functions) {
+            builder.append(SmtLib.declare(function)).append('\n');
+        }
+        List<Variable> variables = new ArrayList<>(marshaller.getVariables());
+        variables.sort(Comparator.comparing(marshaller::toString));
+        for (Variable variable : variables) {
+            builder.append(SmtLib.declare(variable, marshaller)).append('\n');
+        }
+        for (String command : commands) {
+            builder.append(command).append('\n');
+        }
+        builder.append("(pop 1)\n");
+        return builder.toString();
+    }
+
+    private static String printTerm(Node node, VariableMarshaller marshaller, Set<UIF> functions) {
+        for (UIFApplication application : Traverse.collectByType(node, UIFApplication.class)) {
+            functions.add(application.getUIF());
+        }
+        return SmtLib.print(node, marshaller);
+    }
+
+    private void write(String query) {
+        try {
+            if (out == null || queriesInFile >= queriesPerFile) {
+                roll();
+            }
+            out.write(query);
+            queriesInFile++;
+            recorded.incrementAndGet();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("failed to record query: " + e);
+        }
+    }
+
+    private void roll() throws IOException {
+        if (out != null) {
+            out.close();
+        }
+        fileIndex++;
+        Path file = directory.resolve(String.format("%s-%05d.smt2.gz", prefix, fileIndex));
+        out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file)), CHARSET));
+        out.write("(set-option :produce-models true)\n");
+        out.write("(set-option :produce-unsat-assumptions true)\n");
+        queriesInFile = 0;
+    }
+
+    public long getRecordedCount() {
+        return recorded.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Waits until the queued queries are written
+     */
+    @Override
+    public void close() throws IOException {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.SmtLib.SExpr;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.ProgramVariable;
+import sg.edu.nus.comp.codis.ast.Type;
+import sg.edu.nus.comp.codis.ast.theory.UIF;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Re-runs queries recorded by {@link QueryRecorder} against a backend and compares status and time.
+ *
+ * Usage: QueryReplay z3|mathsat [--timeout ms] file...
+ */
+public class QueryReplay {
+
+    private static final Pattern HEADER = Pattern.compile(
+            "; query (\\d+) kind=(\\w+) backend=(\\S+) status=(\\w+) time_ms=([0-9.]+)");
+
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+
+    public static class RecordedQuery {
+        private long id;
+        private QueryRecorder.Kind kind;
+        private String backend;
+        private String status;
+        private double time;
+        private List<Node> first;
+        private List<Node> second;
+
+        public long getId() {
+            return id;
+        }
+
+        public QueryRecorder.Kind getKind() {
+            return kind;
+        }
+
+        public String getBackend() {
+            return backend;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public double getTimeMillis() {
+            return time;
+        }
+
+        /**
+         * Clauses or left clauses of interpolation
+         */
+        public List<Node> getFirst() {
+            return first;
+        }
+
+        /**
+         * Assumptions or right clauses of interpolation
+         */
+        public List<Node> getSecond() {
+            return second;
+        }
+    }
+
+    public static List<RecordedQuery> read(Path file) throws IOException {
+        InputStream input = Files.newInputStream(file);
+        if (file.toString().endsWith(".gz")) {
+            input = new GZIPInputStream(input);
+        }
+        List<RecordedQuery> queries = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, CHARSET))) {
+            Matcher header = null;
+            StringBuilder body = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(QueryRecorder.HEADER)) {
+                    if (header != null) {
+                        queries.add(parse(header, body.toString()));
+                    }
+                    header = HEADER.matcher(line);
+                    if (!header.matches()) {
+                        throw new RuntimeException("malformed query header: " + line);
+                    }
+                    body.setLength(0);
+                } else if (header != null) {
+                    body.append(line).append('\n');
+                }
+            }
+            if (header != null) {
+                queries.add(parse(header, body.toString()));
+            }
+        }
+        return queries;
+    }
+
+    private static RecordedQuery parse(Matcher header, String body) {
+        RecordedQuery query = new RecordedQuery();
+        query.id = Long.parseLong(header.group(1));
+        query.kind = QueryRecorder.Kind.valueOf(header.group(2).toUpperCase());
+        query.backend = header.group(3);
+        query.status = header.group(4);
+        query.time = Double.parseDouble(header.group(5));
+        query.first = new ArrayList<>();
+        query.second = new ArrayList<>();
+
+        Map<String, Node> scope = new HashMap<>();
+        Map<String, UIF> functions = new HashMap<>();
+        for (SExpr command : SmtLib.read(body)) {
+            if (command.isApplicationOf("declare-fun")) {
+                String name = command.get(1).getAtom();
+                Type type = SmtLib.parseType(command.get(3));
+                if (command.get(2).getList().isEmpty()) {
+                    scope.put(name, new ProgramVariable(name, type));
+                } else {
+                    ArrayList<Type> argTypes = new ArrayList<>();
+                    for (SExpr argType : command.get(2).getList()) {
+                        argTypes.add(SmtLib.parseType(argType));
+                    }
+                    String uifName = name.startsWith("|") ? name.substring(1, name.length() - 1) : name;
+                    functions.put(name, new UIF(uifName, type, argTypes));
+                }
+            } else if (command.isApplicationOf("define-fun")) {
+                Node assumption = SmtLib.parse(command.get(4), scope, functions);
+                scope.put(command.get(1).getAtom(), assumption);
+                query.second.add(assumption);
+            } else if (command.isApplicationOf("assert")) {
+                SExpr formula = command.get(1);
+                if (formula.isApplicationOf("!")) {
+                    Node clause = SmtLib.parse(formula.get(1), scope, functions);
+                    if (formula.get(3).getAtom().equals("A")) {
+                        query.first.add(clause);
+                    } else {
+                        query.second.add(clause);
+                    }
+                } else {
+                    query.first.add(SmtLib.parse(formula, scope, functions));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static String replay(RecordedQuery query, Object backend, SolverLimits limits) {
+        SolverResult<?, ?> result;
+        if (query.kind == QueryRecorder.Kind.CHECK) {
+            result = ((Solver) backend).getModelOrCore(query.first, query.second, limits);
+        } else {
+            result = ((InterpolatingSolver) backend).getModelOrInterpolant(query.first, query.second, limits);
+        }
+        return result.getStatus().toString().toLowerCase();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: QueryReplay z3|mathsat [--timeout ms] file...");
+            System.exit(1);
+        }
+        String backendName = args[0];
+        SolverLimits limits = SolverLimits.NONE;
+        List<Path> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--timeout")) {
+                limits = SolverLimits.timeout(Long.parseLong(args[++i]));
+            } else {
+                files.add(Paths.get(args[i]));
+            }
+        }
+
+        Object solver;
+        Object iSolver;
+        if (backendName.equals("z3")) {
+            solver = Z3.buildSolver();
+            iSolver = Z3.buildInterpolatingSolver();
+        } else if (backendName.equals("mathsat")) {
+            solver = MathSAT.buildSolver();
+            iSolver = MathSAT.buildInterpolatingSolver();
+        } else {
+            throw new RuntimeException("unknown backend " + backendName);
+        }
+
+        int total = 0;
+        int mismatches = 0;
+        double recordedTime = 0;
+        double replayedTime = 0;
+        for (Path file : files) {
+            for (RecordedQuery query : read(file)) {
+                Object backend = query.kind == QueryRecorder.Kind.CHECK ? solver : iSolver;
+                long start = System.nanoTime();
+                String status;
+                try {
+                    status = replay(query, backend, limits);
+                } catch (RuntimeException e) {
+                    status = "error";
+                }
+                double time = (System.nanoTime() - start) / 1e6;
+                total++;
+                recordedTime += query.time;
+                replayedTime += time;
+                boolean decided = !query.status.equals("unknown") && !query.status.equals("error")
+                        && !status.equals("unknown") && !status.equals("error");
+                if (decided && !status.equals(query.status)) {
+                    mismatches++;
+                }
+                System.out.println(String.format(Locale.ROOT, "%s#%d %s %s -> %s %.3fms -> %.3fms",
+                        file.getFileName(), query.id, query.backend, query.status, status, query.time, time));
+            }
+        }
+        System.out.println(String.format(Locale.ROOT, "queries: %d, status mismatches: %d, recorded: %.3fms, replayed: %.3fms",
+                total, mismatches, recordedTime, replayedTime));
+        System.exit(mismatches == 0 ? 0 : 2);
+    }
+}
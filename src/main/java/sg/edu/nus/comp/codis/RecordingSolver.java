@@ -0,0 +1,110 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Passes queries to the backend and records them with their status and time
+ */
+public class RecordingSolver implements Solver, InterpolatingSolver {
+
+    private Solver solver;
+    private InterpolatingSolver iSolver;
+
+    private String name;
+    private QueryRecorder recorder;
+
+    public RecordingSolver(Solver solver, String name, QueryRecorder recorder) {
+        this.solver = solver;
+        this.name = name;
+        this.recorder = recorder;
+    }
+
+    public RecordingSolver(InterpolatingSolver iSolver, String name, QueryRecorder recorder) {
+        this.iSolver = iSolver;
+        this.name = name;
+        this.recorder = recorder;
+    }
+
+    private <R> R record(QueryRecorder.Kind kind,
+                         List<Node> first,
+                         List<Node> second,
+                         Supplier<R> query,
+                         Function<R, String> status) {
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            R result = query.get();
+            outcome = status.apply(result);
+            return result;
+        } finally {
+            recorder.record(name, kind, first, second, outcome, System.nanoTime() - start);
+        }
+    }
+
+    private static String status(Either<?, ?> result) {
+        return result.isLeft() ? "sat" : "unsat";
+    }
+
+    private static String status(SolverResult<?, ?> result) {
+        return result.getStatus().toString().toLowerCase();
+    }
+
+    private Solver getSolver() {
+        if (solver == null) {
+            throw new UnsupportedOperationException("backend is not a solver");
+        }
+        return solver;
+    }
+
+    private InterpolatingSolver getInterpolatingSolver() {
+        if (iSolver == null) {
+            throw new UnsupportedOperationException("backend is not an interpolating solver");
+        }
+        return iSolver;
+    }
+
+    @Override
+    public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+        return record(QueryRecorder.Kind.CHECK, clauses, assumptions,
+                () -> getSolver().getModelOrCore(clauses, assumptions), RecordingSolver::status);
+    }
+
+    @Override
+    public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+        return record(QueryRecorder.Kind.CHECK, clauses, new ArrayList<>(),
+                () -> getSolver().getModel(clauses), r -> r.isPresent() ? "sat" : "unsat");
+    }
+
+    @Override
+    public SolverResult<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses,
+                                                                            List<Node> assumptions,
+                                                                            SolverLimits limits) {
+        return record(QueryRecorder.Kind.CHECK, clauses, assumptions,
+                () -> getSolver().getModelOrCore(clauses, assumptions, limits), RecordingSolver::status);
+    }
+
+    @Override
+    public Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses) {
+        return record(QueryRecorder.Kind.INTERPOLATE, leftClauses, rightClauses,
+                () -> getInterpolatingSolver().getModelOrInterpolant(leftClauses, rightClauses), RecordingSolver::status);
+    }
+
+    @Override
+    public SolverResult<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses,
+                                                                             List<Node> rightClauses,
+                                                                             SolverLimits limits) {
+        return record(QueryRecorder.Kind.INTERPOLATE, leftClauses, rightClauses,
+                () -> getInterpolatingSolver().getModelOrInterpolant(leftClauses, rightClauses, limits),
+                RecordingSolver::status);
+    }
+}
@@ -29,8 +29,12 @@ public class Rewriter {
                 for (RewriteRule rule : rules) {
                     Optional<Map<Hole, Node>> unifier = Unifier.unify(rule.getPattern(), n);
                     if (unifier.isPresent()) {
-                        modified = true;
-                        return rule.apply(n, unifier.get());
+                        Node result = rule.apply(n, unifier.get());
+                        // rules can decline by returning the node itself
+                        if (result != n) {
+                            modified = true;
+                            return result;
+                        }
                     }
                 }
                 return n;
@@ -0,0 +1,141 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Parameter;
+import sg.edu.nus.comp.codis.ast.Program;
+import sg.edu.nus.comp.codis.ast.TestCase;
+
+import java.util.*;
+
+/**
+ * Index of programs by the fingerprint of their outputs on a test suite, used to detect candidates that are
+ * observationally equivalent to ones already seen. Programs that cannot be evaluated column-wise on every
+ * test have no signature and are never considered redundant.
+ *
+ * Tests are added in chunks, each with its own {@link BatchEvaluator}. When tests are added, signatures
+ * of indexed programs are extended by evaluating them on the new tests only.
+ */
+public class SignatureIndex {
+
+    private List<BatchEvaluator> chunks;
+
+    private class Entry {
+        private Program program;
+        private Map<Parameter, Constant> parameterValuation;
+        private Optional<Long> signature;
+        // output column for each chunk, compared when signatures collide
+        private List<Object> outputs;
+
+        Entry(Program program, Map<Parameter, Constant> parameterValuation, Optional<Long> signature, List<Object> outputs) {
+            this.program = program;
+            this.parameterValuation = parameterValuation;
+            this.signature = signature;
+            this.outputs = outputs;
+        }
+    }
+
+    private List<Entry> entries;
+
+    private Map<Long, List<Entry>> signatures;
+
+    public SignatureIndex(BatchEvaluator evaluator) {
+        this.chunks = new ArrayList<>();
+        this.chunks.add(evaluator);
+        this.entries = new ArrayList<>();
+        this.signatures = new HashMap<>();
+    }
+
+    public SignatureIndex(List<TestCase> tests) {
+        this(new BatchEvaluator(new TestStore(tests), null));
+    }
+
+    private static Optional<Long> extend(Optional<Long> signature, Optional<Long> fingerprint) {
+        if (!signature.isPresent() || !fingerprint.isPresent()) {
+            return Optional.empty();
+        }
+        long hash = (signature.get() ^ fingerprint.get()) * 0x9E3779B97F4A7C15L;
+        return Optional.of(hash ^ (hash >>> 32));
+    }
+
+    public Optional<Long> getSignature(Program program, Map<Parameter, Constant> parameterValuation) {
+        Optional<Long> signature = Optional.of(0L);
+        for (BatchEvaluator chunk : chunks) {
+            signature = extend(signature, chunk.getFingerprint(program, parameterValuation));
+        }
+        return signature;
+    }
+
+    private List<Object> getOutputs(Program program, Map<Parameter, Constant> parameterValuation) {
+        List<Object> outputs = new ArrayList<>(chunks.size());
+        for (BatchEvaluator chunk : chunks) {
+            outputs.add(chunk.getOutputs(program, parameterValuation).get());
+        }
+        return outputs;
+    }
+
+    private static boolean sameOutputs(List<Object> left, List<Object> right) {
+        for (int i = 0; i < left.size(); i++) {
+            if (!Objects.deepEquals(left.get(i), right.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean contains(Optional<Long> signature,
+                             Program program,
+                             Map<Parameter, Constant> parameterValuation) {
+        if (!signature.isPresent() || !signatures.containsKey(signature.get())) {
+            return false;
+        }
+        List<Object> outputs = getOutputs(program, parameterValuation);
+        for (Entry entry : signatures.get(signature.get())) {
+            if (sameOutputs(entry.outputs, outputs)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean contains(Program program, Map<Parameter, Constant> parameterValuation) {
+        return contains(getSignature(program, parameterValuation), program, parameterValuation);
+    }
+
+    /**
+     * @return false if an equivalent program is already indexed
+     */
+    public boolean add(Program program, Map<Parameter, Constant> parameterValuation) {
+        Optional<Long> signature = getSignature(program, parameterValuation);
+        if (contains(signature, program, parameterValuation)) {
+            return false;
+        }
+        Entry entry = new Entry(program, parameterValuation, signature,
+                                signature.isPresent() ? getOutputs(program, parameterValuation) : null);
+        entries.add(entry);
+        signature.ifPresent(hash -> signatures.computeIfAbsent(hash, k -> new ArrayList<>()).add(entry));
+        return true;
+    }
+
+    /**
+     * Programs rejected as equivalent on the previous tests are not reconsidered
+     */
+    public void addTests(List<TestCase> tests) {
+        BatchEvaluator chunk = new BatchEvaluator(new TestStore(tests), null);
+        chunks.add(chunk);
+        signatures.clear();
+        for (Entry entry : entries) {
+            entry.signature = extend(entry.signature, chunk.getFingerprint(entry.program, entry.parameterValuation));
+            if (entry.signature.isPresent()) {
+                entry.outputs.add(chunk.getOutputs(entry.program, entry.parameterValuation).get());
+                signatures.computeIfAbsent(entry.signature.get(), k -> new ArrayList<>()).add(entry);
+            } else {
+                entry.outputs = null;
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+}
@@ -1,13 +1,12 @@
 package sg.edu.nus.comp.codis;
 
-import sg.edu.nus.comp.codis.ast.BoolType;
-import sg.edu.nus.comp.codis.ast.Hole;
-import sg.edu.nus.comp.codis.ast.IntType;
-import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.*;
 import sg.edu.nus.comp.codis.ast.theory.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Function;
 
 /**
@@ -17,11 +16,37 @@ public class Simplifier {
 
     public static Node simplify(Node node) {
         Rewriter rewriter = new Rewriter();
-        return rewriter.applyRules(node, simplificationRules);
+        return rewriter.applyRules(foldGround(node), simplificationRules);
+    }
+
+    /**
+     * Replaces applications to constants, including equalities and bit-vector operators, with their values.
+     * Applications that the {@link Interpreter} cannot evaluate are kept.
+     */
+    public static Node foldGround(Node node) {
+        return Traverse.transform(node, n -> {
+            if (!(n instanceof Application)) {
+                return n;
+            }
+            for (Node arg : ((Application) n).getArgs()) {
+                if (!(arg instanceof Constant)) {
+                    return n;
+                }
+            }
+            Optional<Constant> value = Interpreter.eval(n, Collections.emptyMap());
+            return value.isPresent() ? value.get() : n;
+        });
     }
 
     private static ArrayList<RewriteRule> simplificationRules;
 
+    private static Node fold(Node node, long value) {
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            return node;
+        }
+        return IntConst.of((int) value);
+    }
+
     static {
         simplificationRules = new ArrayList<>();
 
@@ -35,17 +60,22 @@ public class Simplifier {
         Function<Map<Hole, Node>, Boolean> getA = unifier -> ((BoolConst)unifier.get(a)).getValue();
         Function<Map<Hole, Node>, Boolean> getB = unifier -> ((BoolConst)unifier.get(b)).getValue();
 
-        // Evaluation rules:
-        simplificationRules.add(new RewriteRule(new Add(i, j), (unused, unifier) ->
-                IntConst.of(getI.apply(unifier) + getJ.apply(unifier))));
+        // Evaluation rules, integer operations are not folded if the result is not representable or undefined:
+        simplificationRules.add(new RewriteRule(new Add(i, j), (node, unifier) ->
+                fold(node, (long) getI.apply(unifier) + getJ.apply(unifier))));
 
-        simplificationRules.add(new RewriteRule(new Sub(i, j), (unused, unifier) ->
-                IntConst.of(getI.apply(unifier) - getJ.apply(unifier))));
-        simplificationRules.add(new RewriteRule(new Mult(i, j), (unused, unifier) ->
-                IntConst.of(getI.apply(unifier) * getJ.apply(unifier))));
+        simplificationRules.add(new RewriteRule(new Sub(i, j), (node, unifier) ->
+                fold(node, (long) getI.apply(unifier) - getJ.apply(unifier))));
+        simplificationRules.add(new RewriteRule(new Mult(i, j), (node, unifier) ->
+                fold(node, (long) getI.apply(unifier) * getJ.apply(unifier))));
 
-        simplificationRules.add(new RewriteRule(new Div(i, j), (unused, unifier) ->
-                IntConst.of(getI.apply(unifier) / getJ.apply(unifier))));
+        simplificationRules.add(new RewriteRule(new Div(i, j), (node, unifier) -> {
+            long divisor = getJ.apply(unifier);
+            if (divisor == 0) {
+                return node;
+            }
+            return fold(node, Arithmetic.div(getI.apply(unifier), divisor));
+        }));
 
         simplificationRules.add(new RewriteRule(new Greater(i, j), (unused, unifier) ->
                 BoolConst.of(getI.apply(unifier) > getJ.apply(unifier))));
@@ -59,8 +89,8 @@ public class Simplifier {
         simplificationRules.add(new RewriteRule(new LessOrEqual(i, j), (unused, unifier) ->
                 BoolConst.of(getI.apply(unifier) <= getJ.apply(unifier))));
 
-        simplificationRules.add(new RewriteRule(new Minus(i), (unused, unifier) ->
-                IntConst.of(- getI.apply(unifier))));
+        simplificationRules.add(new RewriteRule(new Minus(i), (node, unifier) ->
+                fold(node, - (long) getI.apply(unifier))));
 
         simplificationRules.add(new RewriteRule(new And(a, b), (unused, unifier) ->
                 BoolConst.of(getA.apply(unifier) && getB.apply(unifier))));
@@ -0,0 +1,308 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Printing and parsing of formulas in SMT-LIB2 syntax. Variables are printed by their marshalled names
+ * and parsed back as program variables.
+ */
+public class SmtLib {
+
+    private static final Map<Class<?>, String> binaryNames = new HashMap<>();
+    private static final Map<String, BiFunction<Node, Node, Node>> binaryOps = new HashMap<>();
+    private static final Map<Class<?>, String> unaryNames = new HashMap<>();
+    private static final Map<String, Function<Node, Node>> unaryOps = new HashMap<>();
+
+    private static void binary(Class<?> type, String name, BiFunction<Node, Node, Node> constructor) {
+        binaryNames.put(type, name);
+        binaryOps.put(name, constructor);
+    }
+
+    private static void unary(Class<?> type, String name, Function<Node, Node> constructor) {
+        unaryNames.put(type, name);
+        unaryOps.put(name, constructor);
+    }
+
+    static {
+        binary(Equal.class, "=", Equal::new);
+        binaryNames.put(Iff.class, "=");
+        binary(Add.class, "+", Add::new);
+        binary(Sub.class, "-", Sub::new);
+        binary(Mult.class, "*", Mult::new);
+        binary(Div.class, "div", Div::new);
+        binary(And.class, "and", And::new);
+        binary(Or.class, "or", Or::new);
+        binary(Impl.class, "=>", Impl::new);
+        binary(Greater.class, ">", Greater::new);
+        binary(Less.class, "<", Less::new);
+        binary(GreaterOrEqual.class, ">=", GreaterOrEqual::new);
+        binary(LessOrEqual.class, "<=", LessOrEqual::new);
+        binary(BVAdd.class, "bvadd", BVAdd::new);
+        binary(BVAnd.class, "bvand", BVAnd::new);
+        binary(BVMult.class, "bvmul", BVMult::new);
+        binary(BVOr.class, "bvor", BVOr::new);
+        binary(BVShiftLeft.class, "bvshl", BVShiftLeft::new);
+        binary(BVSignedDiv.class, "bvsdiv", BVSignedDiv::new);
+        binary(BVSignedGreater.class, "bvsgt", BVSignedGreater::new);
+        binary(BVSignedGreaterOrEqual.class, "bvsge", BVSignedGreaterOrEqual::new);
+        binary(BVSignedLess.class, "bvslt", BVSignedLess::new);
+        binary(BVSignedLessOrEqual.class, "bvsle", BVSignedLessOrEqual::new);
+        binary(BVSignedModulo.class, "bvsmod", BVSignedModulo::new);
+        binary(BVSignedRemainder.class, "bvsrem", BVSignedRemainder::new);
+        binary(BVSignedShiftRight.class, "bvashr", BVSignedShiftRight::new);
+        binary(BVSub.class, "bvsub", BVSub::new);
+        binary(BVUnsignedDiv.class, "bvudiv", BVUnsignedDiv::new);
+        binary(BVUnsignedGreater.class, "bvugt", BVUnsignedGreater::new);
+        binary(BVUnsignedGreaterOrEqual.class, "bvuge", BVUnsignedGreaterOrEqual::new);
+        binary(BVUnsignedLess.class, "bvult", BVUnsignedLess::new);
+        binary(BVUnsignedLessOrEqual.class, "bvule", BVUnsignedLessOrEqual::new);
+        binary(BVUnsignedRemainder.class, "bvurem", BVUnsignedRemainder::new);
+        binary(BVUnsignedShiftRight.class, "bvlshr", BVUnsignedShiftRight::new);
+        binary(BVNand.class, "bvnand", BVNand::new);
+        binary(BVXor.class, "bvxor", BVXor::new);
+        binary(BVNor.class, "bvnor", BVNor::new);
+        binary(BVXnor.class, "bvxnor", BVXnor::new);
+        unary(Minus.class, "-", Minus::new);
+        unary(Not.class, "not", Not::new);
+        unary(BVNeg.class, "bvneg", BVNeg::new);
+        unary(BVNot.class, "bvnot", BVNot::new);
+    }
+
+    public static String printType(Type type) {
+        if (type.equals(IntType.TYPE)) {
+            return "Int";
+        } else if (type.equals(BoolType.TYPE)) {
+            return "Bool";
+        } else if (type instanceof BVType) {
+            return "(_ BitVec " + ((BVType) type).getSize() + ")";
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static String declare(Variable variable, VariableMarshaller marshaller) {
+        return "(declare-fun " + marshaller.toString(variable) + " () " + printType(variable.getType()) + ")";
+    }
+
+    public static String declare(UIF uif) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("(declare-fun |").append(uif.getName()).append("| (");
+        for (int i = 0; i < uif.getArgTypes().size(); i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(printType(uif.getArgTypes().get(i)));
+        }
+        builder.append(") ").append(printType(uif.getType())).append(')');
+        return builder.toString();
+    }
+
+    public static String print(Node node, VariableMarshaller marshaller) {
+        StringBuilder builder = new StringBuilder();
+        print(node, marshaller, builder);
+        return builder.toString();
+    }
+
+    private static void print(Node node, VariableMarshaller marshaller, StringBuilder builder) {
+        if (node instanceof Instantiation) {
+            print(((Instantiation) node).expand(), marshaller, builder);
+        } else if (node instanceof Variable) {
+            builder.append(marshaller.toString((Variable) node));
+        } else if (node instanceof IntConst) {
+            int value = ((IntConst) node).getValue();
+            if (value < 0) {
+                builder.append("(- ").append(-(long) value).append(')');
+            } else {
+                builder.append(value);
+            }
+        } else if (node instanceof BoolConst) {
+            builder.append(((BoolConst) node).getValue());
+        } else if (node instanceof BVConst) {
+            BVConst constant = (BVConst) node;
+            int size = constant.getType().getSize();
+            long value = size < 64 ? constant.getLong() & ((1L << size) - 1) : constant.getLong();
+            builder.append("(_ bv").append(Long.toUnsignedString(value)).append(' ').append(size).append(')');
+        } else if (node instanceof ITE) {
+            printApplication("ite", ((ITE) node).getArgs(), marshaller, builder);
+        } else if (node instanceof UIFApplication) {
+            printApplication("|" + ((UIFApplication) node).getUIF().getName() + "|",
+                             ((UIFApplication) node).getArgs(), marshaller, builder);
+        } else if (binaryNames.containsKey(node.getClass())) {
+            BinaryOp op = (BinaryOp) node;
+            printApplication(binaryNames.get(node.getClass()), Arrays.asList(op.getLeft(), op.getRight()), marshaller, builder);
+        } else if (unaryNames.containsKey(node.getClass())) {
+            printApplication(unaryNames.get(node.getClass()), Collections.singletonList(((UnaryOp) node).getArg()), marshaller, builder);
+        } else {
+            throw new UnsupportedOperationException("cannot print " + node.getClass().getSimpleName());
+        }
+    }
+
+    private static void printApplication(String name, List<Node> args, VariableMarshaller marshaller, StringBuilder builder) {
+        builder.append('(').append(name);
+        for (Node arg : args) {
+            builder.append(' ');
+            print(arg, marshaller, builder);
+        }
+        builder.append(')');
+    }
+
+    /**
+     * S-expression, either an atom or a list
+     */
+    public static class SExpr {
+        private String atom;
+        private List<SExpr> list;
+
+        private SExpr(String atom, List<SExpr> list) {
+            this.atom = atom;
+            this.list = list;
+        }
+
+        public boolean isAtom() {
+            return atom != null;
+        }
+
+        public String getAtom() {
+            return atom;
+        }
+
+        public List<SExpr> getList() {
+            return list;
+        }
+
+        public SExpr get(int index) {
+            return list.get(index);
+        }
+
+        public boolean isApplicationOf(String head) {
+            return !isAtom() && !list.isEmpty() && list.get(0).isAtom() && list.get(0).getAtom().equals(head);
+        }
+
+        @Override
+        public String toString() {
+            if (isAtom()) {
+                return atom;
+            }
+            StringBuilder builder = new StringBuilder("(");
+            for (int i = 0; i < list.size(); i++) {
+                if (i > 0) {
+                    builder.append(' ');
+                }
+                builder.append(list.get(i));
+            }
+            return builder.append(')').toString();
+        }
+    }
+
+    /**
+     * Read all s-expressions of the text, comments are skipped
+     */
+    public static List<SExpr> read(String text) {
+        List<SExpr> result = new ArrayList<>();
+        Stack<List<SExpr>> open = new Stack<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == ';') {
+                while (i < text.length() && text.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '(') {
+                open.push(new ArrayList<>());
+                i++;
+            } else if (c == ')') {
+                if (open.isEmpty()) {
+                    throw new RuntimeException("unbalanced parenthesis at " + i);
+                }
+                SExpr list = new SExpr(null, open.pop());
+                if (open.isEmpty()) {
+                    result.add(list);
+                } else {
+                    open.peek().add(list);
+                }
+                i++;
+            } else {
+                int start = i;
+                if (c == '|') {
+                    i = text.indexOf('|', i + 1) + 1;
+                    if (i == 0) {
+                        throw new RuntimeException("unterminated symbol at " + start);
+                    }
+                } else {
+                    while (i < text.length() && !Character.isWhitespace(text.charAt(i))
+                            && text.charAt(i) != '(' && text.charAt(i) != ')' && text.charAt(i) != ';') {
+                        i++;
+                    }
+                }
+                SExpr atom = new SExpr(text.substring(start, i), null);
+                if (open.isEmpty()) {
+                    result.add(atom);
+                } else {
+                    open.peek().add(atom);
+                }
+            }
+        }
+        if (!open.isEmpty()) {
+            throw new RuntimeException("unbalanced parenthesis at end of input");
+        }
+        return result;
+    }
+
+    public static Type parseType(SExpr expr) {
+        if (expr.isAtom() && expr.getAtom().equals("Int")) {
+            return IntType.TYPE;
+        } else if (expr.isAtom() && expr.getAtom().equals("Bool")) {
+            return BoolType.TYPE;
+        } else if (expr.isApplicationOf("_") && expr.get(1).getAtom().equals("BitVec")) {
+            return new BVType(Integer.parseInt(expr.get(2).getAtom()));
+        } else {
+            throw new RuntimeException("unsupported sort " + expr);
+        }
+    }
+
+    /**
+     * Parse term in the scope of declared variables, defined terms and functions
+     */
+    public static Node parse(SExpr expr, Map<String, Node> scope, Map<String, UIF> functions) {
+        if (expr.isAtom()) {
+            String atom = expr.getAtom();
+            if (scope.containsKey(atom)) {
+                return scope.get(atom);
+            } else if (atom.equals("true") || atom.equals("false")) {
+                return BoolConst.of(Boolean.parseBoolean(atom));
+            } else if (!atom.isEmpty() && Character.isDigit(atom.charAt(0))) {
+                // wraps around for the magnitude of the minimal integer, which is then negated back
+                return IntConst.of((int) Long.parseLong(atom));
+            }
+            throw new RuntimeException("undeclared symbol " + atom);
+        }
+        if (expr.isApplicationOf("_") && expr.get(1).getAtom().startsWith("bv")) {
+            long value = Long.parseUnsignedLong(expr.get(1).getAtom().substring(2));
+            return BVConst.ofLong(value, Integer.parseInt(expr.get(2).getAtom()));
+        }
+        String head = expr.get(0).getAtom();
+        List<Node> args = new ArrayList<>();
+        for (SExpr arg : expr.getList().subList(1, expr.getList().size())) {
+            args.add(parse(arg, scope, functions));
+        }
+        if (head.equals("-") && args.size() == 1 && args.get(0) instanceof IntConst) {
+            return IntConst.of(-((IntConst) args.get(0)).getValue());
+        } else if (head.equals("ite") && args.size() == 3) {
+            return new ITE(args.get(0), args.get(1), args.get(2));
+        } else if (functions.containsKey(head)) {
+            return new UIFApplication(functions.get(head), new ArrayList<>(args));
+        } else if (args.size() == 2 && binaryOps.containsKey(head)) {
+            return binaryOps.get(head).apply(args.get(0), args.get(1));
+        } else if (args.size() == 1 && unaryOps.containsKey(head)) {
+            return unaryOps.get(head).apply(args.get(0));
+        }
+        throw new RuntimeException("unsupported term " + expr);
+    }
+}
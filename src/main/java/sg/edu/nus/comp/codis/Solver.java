@@ -16,4 +16,17 @@ import java.util.Optional;
 public interface Solver {
     Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions);
     Optional<Map<Variable, Constant>> getModel(List<Node> clauses);
+
+    /**
+     * Query bounded by the given limits, backends that cannot enforce them ignore the limits
+     */
+    default SolverResult<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses,
+                                                                             List<Node> assumptions,
+                                                                             SolverLimits limits) {
+        return SolverResult.of(getModelOrCore(clauses, assumptions));
+    }
+
+    default SolverResult<Map<Variable, Constant>, List<Node>> getModel(List<Node> clauses, SolverLimits limits) {
+        return getModelOrCore(clauses, new ArrayList<>(), limits);
+    }
 }
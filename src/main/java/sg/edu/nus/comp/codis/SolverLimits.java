@@ -0,0 +1,60 @@
+package sg.edu.nus.comp.codis;
+
+import java.util.Optional;
+
+/**
+ * Per-call budget of a solver query: wall-clock timeout in milliseconds and backend resource limit
+ * (rlimit for Z3). Exhausting the budget makes the query UNKNOWN instead of blocking the caller.
+ */
+public class SolverLimits {
+
+    public static final SolverLimits NONE = new SolverLimits(Optional.empty(), Optional.empty());
+
+    private Optional<Long> timeout;
+    private Optional<Long> resourceLimit;
+
+    private SolverLimits(Optional<Long> timeout, Optional<Long> resourceLimit) {
+        this.timeout = timeout;
+        this.resourceLimit = resourceLimit;
+    }
+
+    public static SolverLimits timeout(long milliseconds) {
+        return NONE.withTimeout(milliseconds);
+    }
+
+    public static SolverLimits resourceLimit(long limit) {
+        return NONE.withResourceLimit(limit);
+    }
+
+    public SolverLimits withTimeout(long milliseconds) {
+        if (milliseconds <= 0) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        return new SolverLimits(Optional.of(milliseconds), resourceLimit);
+    }
+
+    public SolverLimits withResourceLimit(long limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("resource limit must be positive");
+        }
+        return new SolverLimits(timeout, Optional.of(limit));
+    }
+
+    public Optional<Long> getTimeout() {
+        return timeout;
+    }
+
+    public Optional<Long> getResourceLimit() {
+        return resourceLimit;
+    }
+
+    public boolean isUnlimited() {
+        return !timeout.isPresent() && !resourceLimit.isPresent();
+    }
+
+    @Override
+    public String toString() {
+        return "timeout=" + timeout.map(String::valueOf).orElse("none") +
+                ", rlimit=" + resourceLimit.map(String::valueOf).orElse("none");
+    }
+}
@@ -0,0 +1,223 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Pool of solver backends, each leased to one thread at a time, so that the pool itself can be
+ * shared between threads. Backends are recycled after a number of queries and disposed when idle
+ * to bound native memory.
+ */
+public class SolverPool<T extends Solver & InterpolatingSolver> implements Solver, InterpolatingSolver {
+
+    private Logger logger = LoggerFactory.getLogger(SolverPool.class);
+
+    private class Entry {
+        private T backend;
+        private int queries;
+        private long lastUsed;
+
+        Entry(T backend) {
+            this.backend = backend;
+            this.queries = 0;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+
+    private Supplier<T> factory;
+    private Consumer<T> disposer;
+
+    private int maxSize;
+    private int maxQueries;
+    private long idleTimeout;
+
+    private Semaphore available;
+    private Deque<Entry> idle;
+    private Map<T, Entry> leased;
+
+    private long created;
+    private long recycled;
+    private long evicted;
+
+    /**
+     * @param maxQueries number of queries after which a backend is disposed and replaced
+     * @param idleTimeout milliseconds after which an idle backend is disposed
+     */
+    public SolverPool(Supplier<T> factory, Consumer<T> disposer, int maxSize, int maxQueries, long idleTimeout) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("pool size must be positive");
+        }
+        this.factory = factory;
+        this.disposer = disposer;
+        this.maxSize = maxSize;
+        this.maxQueries = maxQueries;
+        this.idleTimeout = idleTimeout;
+        this.available = new Semaphore(maxSize, true);
+        this.idle = new ArrayDeque<>();
+        this.leased = new IdentityHashMap<>();
+        this.created = 0;
+        this.recycled = 0;
+        this.evicted = 0;
+    }
+
+    /**
+     * Backends of Z3 pools create both the solving and the interpolating context
+     */
+    public static SolverPool<Z3> ofZ3(int maxSize, int maxQueries, long idleTimeout) {
+        return new SolverPool<>(() -> new Z3(true, true), Z3::dispose, maxSize, maxQueries, idleTimeout);
+    }
+
+    public static SolverPool<MathSAT> ofMathSAT(int maxSize, int maxQueries, long idleTimeout) {
+        return new SolverPool<>(() -> new MathSAT(true), MathSAT::dispose, maxSize, maxQueries, idleTimeout);
+    }
+
+    /**
+     * Create backends ahead of the first queries
+     */
+    public synchronized void warmUp(int count) {
+        while (idle.size() + leased.size() < Math.min(count, maxSize)) {
+            idle.push(new Entry(factory.get()));
+            created++;
+        }
+    }
+
+    /**
+     * Blocks until a backend is available
+     */
+    public T lease() {
+        available.acquireUninterruptibly();
+        Entry entry;
+        synchronized (this) {
+            evictIdle();
+            entry = idle.poll();
+            if (entry == null) {
+                created++;
+            }
+        }
+        if (entry == null) {
+            try {
+                entry = new Entry(factory.get());
+            } catch (RuntimeException e) {
+                available.release();
+                throw e;
+            }
+        }
+        synchronized (this) {
+            leased.put(entry.backend, entry);
+        }
+        return entry.backend;
+    }
+
+    public void release(T backend) {
+        Entry entry;
+        boolean recycle;
+        synchronized (this) {
+            entry = leased.remove(backend);
+            if (entry == null) {
+                throw new IllegalArgumentException("backend is not leased from this pool");
+            }
+            entry.queries++;
+            entry.lastUsed = System.currentTimeMillis();
+            recycle = entry.queries >= maxQueries;
+            if (recycle) {
+                recycled++;
+            } else {
+                idle.push(entry);
+            }
+        }
+        if (recycle) {
+            disposer.accept(entry.backend);
+        }
+        available.release();
+    }
+
+    public <R> R apply(Function<T, R> query) {
+        T backend = lease();
+        try {
+            return query.apply(backend);
+        } finally {
+            release(backend);
+        }
+    }
+
+    /**
+     * Idle backends are pushed to the front, so the stale ones are at the end
+     */
+    private synchronized void evictIdle() {
+        long now = System.currentTimeMillis();
+        while (!idle.isEmpty() && now - idle.peekLast().lastUsed > idleTimeout) {
+            disposer.accept(idle.pollLast().backend);
+            evicted++;
+        }
+    }
+
+    public synchronized void shutdown() {
+        for (Entry entry : idle) {
+            disposer.accept(entry.backend);
+        }
+        idle.clear();
+        if (!leased.isEmpty()) {
+            logger.warn("shutting down pool with " + leased.size() + " leased backends");
+        }
+    }
+
+    public synchronized int getIdleCount() {
+        evictIdle();
+        return idle.size();
+    }
+
+    public synchronized int getLeasedCount() {
+        return leased.size();
+    }
+
+    public synchronized long getCreatedCount() {
+        return created;
+    }
+
+    public synchronized long getRecycledCount() {
+        return recycled;
+    }
+
+    public synchronized long getEvictedCount() {
+        return evicted;
+    }
+
+    @Override
+    public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+        return apply(backend -> LazyModel.materialize(backend.getModelOrCore(clauses, assumptions)));
+    }
+
+    @Override
+    public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+        return apply(backend -> LazyModel.materialize(backend.getModel(clauses)));
+    }
+
+    @Override
+    public Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses) {
+        return apply(backend -> LazyModel.materialize(backend.getModelOrInterpolant(leftClauses, rightClauses)));
+    }
+
+    @Override
+    public SolverResult<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses,
+                                                                            List<Node> assumptions,
+                                                                            SolverLimits limits) {
+        return apply(backend -> LazyModel.materialize(backend.getModelOrCore(clauses, assumptions, limits)));
+    }
+
+    @Override
+    public SolverResult<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses,
+                                                                             List<Node> rightClauses,
+                                                                             SolverLimits limits) {
+        return apply(backend -> LazyModel.materialize(backend.getModelOrInterpolant(leftClauses, rightClauses, limits)));
+    }
+}
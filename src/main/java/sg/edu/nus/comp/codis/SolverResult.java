@@ -0,0 +1,108 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+
+import java.util.Optional;
+
+/**
+ * Three-valued answer of a solver query: model if SAT, conflict (unsat core or interpolant) if UNSAT,
+ * reason if the solver gave up, e.g. because the query exceeded its limits or was interrupted
+ */
+public class SolverResult<M, C> {
+
+    public enum Status { SAT, UNSAT, UNKNOWN }
+
+    private Status status;
+    private M model;
+    private C conflict;
+    private String reason;
+
+    private SolverResult(Status status, M model, C conflict, String reason) {
+        this.status = status;
+        this.model = model;
+        this.conflict = conflict;
+        this.reason = reason;
+    }
+
+    public static <M, C> SolverResult<M, C> sat(M model) {
+        return new SolverResult<>(Status.SAT, model, null, null);
+    }
+
+    public static <M, C> SolverResult<M, C> unsat(C conflict) {
+        return new SolverResult<>(Status.UNSAT, null, conflict, null);
+    }
+
+    public static <M, C> SolverResult<M, C> unknown(String reason) {
+        return new SolverResult<>(Status.UNKNOWN, null, null, reason);
+    }
+
+    public static <M, C> SolverResult<M, C> of(Either<M, C> result) {
+        if (result.isLeft()) {
+            return sat(result.left().value());
+        }
+        return unsat(result.right().value());
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSat() {
+        return status == Status.SAT;
+    }
+
+    public boolean isUnsat() {
+        return status == Status.UNSAT;
+    }
+
+    public boolean isUnknown() {
+        return status == Status.UNKNOWN;
+    }
+
+    public M getModel() {
+        if (status != Status.SAT) {
+            throw new UnsupportedOperationException("no model: " + this);
+        }
+        return model;
+    }
+
+    public C getConflict() {
+        if (status != Status.UNSAT) {
+            throw new UnsupportedOperationException("no conflict: " + this);
+        }
+        return conflict;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public Optional<M> toOptional() {
+        if (status == Status.UNKNOWN) {
+            throw new UnsupportedOperationException("solver returned unknown: " + reason);
+        }
+        return Optional.ofNullable(model);
+    }
+
+    /**
+     * Two-valued view used by the unlimited solver API, UNKNOWN is an error there
+     */
+    public Either<M, C> toEither() {
+        switch (status) {
+            case SAT:
+                return Either.left(model);
+            case UNSAT:
+                return Either.right(conflict);
+            default:
+                throw new UnsupportedOperationException("solver returned unknown: " + reason);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (status == Status.UNKNOWN) {
+            return "UNKNOWN(" + reason + ")";
+        }
+        return status.toString();
+    }
+}
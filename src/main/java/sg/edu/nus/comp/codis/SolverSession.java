@@ -0,0 +1,39 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Incremental solving session. Clauses added after push are retracted by the matching pop,
+ * everything else (including lemmas learned by the backend) is kept between checks.
+ */
+public interface SolverSession {
+    void add(List<Node> clauses);
+    void push();
+    void pop();
+    void dispose();
+
+    /**
+     * Check bounded by the given limits, UNKNOWN if the backend gives up
+     */
+    SolverResult<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> assumptions, SolverLimits limits);
+
+    default SolverResult<Map<Variable, Constant>, List<Node>> getModel(SolverLimits limits) {
+        return getModelOrCore(new ArrayList<>(), limits);
+    }
+
+    default Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> assumptions) {
+        return getModelOrCore(assumptions, SolverLimits.NONE).toEither();
+    }
+
+    default Optional<Map<Variable, Constant>> getModel() {
+        return getModel(SolverLimits.NONE).toOptional();
+    }
+}
@@ -15,4 +15,16 @@ public interface Synthesis {
 
     Optional<Pair<Program, Map<Parameter, Constant>>> synthesize(List<TestCase> testSuite, Multiset<Node> components);
 
+    /**
+     * Limits of the solver queries made by the following calls
+     */
+    default void setLimits(SolverLimits limits) {
+    }
+
+    /**
+     * Release solver sessions kept between calls
+     */
+    default void dispose() {
+    }
+
 }
@@ -0,0 +1,164 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.BVConst;
+import sg.edu.nus.comp.codis.ast.theory.BoolConst;
+import sg.edu.nus.comp.codis.ast.theory.Equal;
+import sg.edu.nus.comp.codis.ast.theory.IntConst;
+
+import java.util.*;
+
+/**
+ * Column-wise storage of a test suite: one array per program variable with its value in every test.
+ * Boolean variables are stored in boolean[], integers and bit-vectors (as unsigned values) in long[].
+ *
+ * Tests that are not plain assignments of inputs and output are kept as symbolic, they have no values.
+ */
+public class TestStore {
+
+    private List<TestCase> tests;
+
+    private Map<TestCase, Integer> indices;
+
+    private Map<ProgramVariable, Object> columns;
+
+    // tests in which the variable is assigned
+    private Map<ProgramVariable, BitSet> defined;
+
+    private Object outputs;
+
+    private BitSet symbolic;
+
+    public TestStore(List<TestCase> tests) {
+        this.tests = new ArrayList<>(tests);
+        this.indices = new HashMap<>();
+        this.columns = new HashMap<>();
+        this.defined = new HashMap<>();
+        this.symbolic = new BitSet();
+        Type outputType = tests.isEmpty() ? null : tests.get(0).getOutputType();
+        this.outputs = newColumn(outputType);
+        for (int i = 0; i < tests.size(); i++) {
+            indices.putIfAbsent(tests.get(i), i);
+            if (!tests.get(i).getOutputType().equals(outputType) || !load(i, tests.get(i))) {
+                symbolic.set(i);
+            }
+        }
+    }
+
+    private Object newColumn(Type type) {
+        if (type == null) {
+            return null;
+        }
+        if (type.equals(BoolType.TYPE)) {
+            return new boolean[tests.size()];
+        } else {
+            return new long[tests.size()];
+        }
+    }
+
+    private boolean load(int index, TestCase test) {
+        if (test.getKind() == TestCase.Kind.CONCRETE) {
+            put(index, test.getInputValues(), test.getOutputValue());
+            return true;
+        }
+        ProgramOutput output = new ProgramOutput(test.getOutputType());
+        Map<ProgramVariable, Constant> inputs = new HashMap<>();
+        Constant expected = null;
+        for (Node clause : test.getConstraints(output)) {
+            if (!(clause instanceof Equal)) {
+                return false;
+            }
+            Node left = ((Equal) clause).getLeft();
+            Node right = ((Equal) clause).getRight();
+            if (!(left instanceof Variable)) {
+                Node swap = left;
+                left = right;
+                right = swap;
+            }
+            Optional<Constant> value = Interpreter.eval(right, Collections.emptyMap());
+            if (!value.isPresent()) {
+                return false;
+            }
+            if (left.equals(output)) {
+                expected = value.get();
+            } else if (left instanceof ProgramVariable) {
+                inputs.put((ProgramVariable) left, value.get());
+            } else {
+                return false;
+            }
+        }
+        if (expected == null) {
+            return false;
+        }
+        put(index, inputs, expected);
+        return true;
+    }
+
+    private void put(int index, Map<ProgramVariable, ? extends Constant> inputs, Constant expected) {
+        store(outputs, index, expected);
+        for (Map.Entry<ProgramVariable, ? extends Constant> entry : inputs.entrySet()) {
+            ProgramVariable variable = entry.getKey();
+            if (!columns.containsKey(variable)) {
+                columns.put(variable, newColumn(variable.getType()));
+                defined.put(variable, new BitSet());
+            }
+            store(columns.get(variable), index, entry.getValue());
+            defined.get(variable).set(index);
+        }
+    }
+
+    private static void store(Object column, int index, Constant value) {
+        if (value instanceof BoolConst) {
+            ((boolean[]) column)[index] = ((BoolConst) value).getValue();
+        } else if (value instanceof IntConst) {
+            ((long[]) column)[index] = ((IntConst) value).getValue();
+        } else if (value instanceof BVConst) {
+            BVConst bv = (BVConst) value;
+            ((long[]) column)[index] = bv.getLong() & Arithmetic.mask(bv.getType().getSize());
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public int size() {
+        return tests.size();
+    }
+
+    public List<TestCase> getTests() {
+        return tests;
+    }
+
+    public TestCase getTest(int index) {
+        return tests.get(index);
+    }
+
+    /**
+     * @return index of the test or -1 if it is not in the store
+     */
+    public int indexOf(TestCase test) {
+        return indices.getOrDefault(test, -1);
+    }
+
+    /**
+     * @return boolean[] or long[] with values of the variable, or null if no test assigns it
+     */
+    public Object getColumn(ProgramVariable variable) {
+        return columns.get(variable);
+    }
+
+    public BitSet getDefined(ProgramVariable variable) {
+        return defined.getOrDefault(variable, new BitSet());
+    }
+
+    /**
+     * @return boolean[] or long[] with expected outputs
+     */
+    public Object getOutputs() {
+        return outputs;
+    }
+
+    public BitSet getSymbolic() {
+        return symbolic;
+    }
+
+}
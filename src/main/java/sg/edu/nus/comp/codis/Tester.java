@@ -5,6 +5,7 @@ import sg.edu.nus.comp.codis.ast.theory.Equal;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Created by Sergey Mechtaev on 2/5/2016.
@@ -13,14 +14,97 @@ public class Tester {
 
     private Solver solver;
 
+    // incremental backends check every test inside one long-lived session
+    private SolverSession session;
+
+    private SolverLimits limits;
+
+    private long checks;
+
+    private long solverChecks;
+
     public Tester(Solver solver) {
         this.solver = solver;
+        this.session = null;
+        this.limits = SolverLimits.NONE;
     }
 
+    public void setLimits(SolverLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * Tests that cannot be decided within the limits are conservatively considered failing
+     */
     public boolean isPassing(Program program, Map<Parameter, Constant> parameterValuation, TestCase test) {
+        return test(program, parameterValuation, test).orElse(false);
+    }
+
+    /**
+     * @return whether the test passes, or empty if the solver gave up within the limits
+     */
+    public Optional<Boolean> test(Program program, Map<Parameter, Constant> parameterValuation, TestCase test) {
+        checks++;
+        Node semantics = program.getSemantics(parameterValuation);
+        if (test.getKind() == TestCase.Kind.CONCRETE) {
+            Optional<Constant> value = Interpreter.eval(semantics, test.getInputValues());
+            if (value.isPresent()) {
+                return Optional.of(value.get().equals(test.getOutputValue()));
+            }
+        }
         Variable result = new ProgramOutput(test.getOutputType());
         List<Node> clauses = test.getConstraints(result);
-        clauses.add(new Equal(program.getSemantics(parameterValuation), result));
-        return solver.getModel(clauses).isPresent();
+        clauses.add(new Equal(semantics, result));
+        Optional<Boolean> ground = Interpreter.check(clauses);
+        if (ground.isPresent()) {
+            return ground;
+        }
+        solverChecks++;
+        SolverResult<Map<Variable, Constant>, List<Node>> outcome;
+        if (solver instanceof IncrementalSolver) {
+            if (session == null) {
+                session = ((IncrementalSolver) solver).openSession();
+            }
+            session.push();
+            try {
+                session.add(clauses);
+                outcome = session.getModel(limits);
+            } finally {
+                session.pop();
+            }
+        } else if (limits.isUnlimited()) {
+            return Optional.of(solver.getModel(clauses).isPresent());
+        } else {
+            outcome = solver.getModel(clauses, limits);
+        }
+        if (outcome.isUnknown()) {
+            return Optional.empty();
+        }
+        return Optional.of(outcome.isSat());
+    }
+
+    /**
+     * Release the incremental session, it is reopened by the next test
+     */
+    public void dispose() {
+        if (session != null) {
+            session.dispose();
+            session = null;
+        }
+    }
+
+    public long getChecks() {
+        return checks;
+    }
+
+    /**
+     * Checks that could not be decided by evaluation, e.g. because of symbolic tests or uninterpreted components
+     */
+    public long getSolverChecks() {
+        return solverChecks;
+    }
+
+    public double getSolverFreeRatio() {
+        return checks == 0 ? 0 : (double) (checks - solverChecks) / checks;
     }
 }
@@ -0,0 +1,111 @@
+package sg.edu.nus.comp.codis;
+
+import sg.edu.nus.comp.codis.ast.Node;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of terms translated in one solver context.
+ *
+ * Terms are evicted in LRU order. Cached terms refer to variables by their marshalled names, so the cache
+ * owns the marshaller, which eviction does not shrink. When the marshaller outgrows the capacity, the owner
+ * clears the whole cache together with everything built from it: one-shot Z3 queries just clear it,
+ * MathSAT recreates its environment, and sessions reassert their clauses from scratch.
+ * Constants of variables are not evicted, they are stored by marshaller id.
+ */
+public class TranslationCache<T> {
+
+    public static final int DEFAULT_CAPACITY = 100000;
+
+    private int capacity;
+
+    private LinkedHashMap<Node, T> terms;
+
+    private VariableMarshaller marshaller;
+
+    private Object[] constants;
+
+    private long hits;
+    private long misses;
+
+    public TranslationCache(int capacity) {
+        this.capacity = capacity;
+        this.terms = new LinkedHashMap<Node, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Node, T> eldest) {
+                return size() > TranslationCache.this.capacity;
+            }
+        };
+        this.marshaller = new VariableMarshaller();
+        this.constants = new Object[16];
+        this.hits = 0;
+        this.misses = 0;
+    }
+
+    public T get(Node node) {
+        T term = terms.get(node);
+        if (term == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return term;
+    }
+
+    public void put(Node node, T term) {
+        terms.put(node, term);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T getConstant(int id) {
+        if (id >= constants.length) {
+            return null;
+        }
+        return (T) constants[id];
+    }
+
+    public void putConstant(int id, T constant) {
+        if (id >= constants.length) {
+            constants = Arrays.copyOf(constants, Math.max(id + 1, constants.length * 2));
+        }
+        constants[id] = constant;
+    }
+
+    public VariableMarshaller getMarshaller() {
+        return marshaller;
+    }
+
+    /**
+     * Whether the marshaller holds more variables than the capacity, and the cache must be cleared
+     */
+    public boolean isFull() {
+        return marshaller.size() > capacity;
+    }
+
+    public void clear() {
+        terms.clear();
+        marshaller.clear();
+        Arrays.fill(constants, null);
+    }
+
+    public int size() {
+        return terms.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        if (hits + misses == 0) {
+            return 0.0;
+        }
+        return (double) hits / (hits + misses);
+    }
+}
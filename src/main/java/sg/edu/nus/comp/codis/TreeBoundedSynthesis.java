@@ -24,6 +24,14 @@ public class TreeBoundedSynthesis extends SynthesisWithLearning {
     private boolean uniqueUsage;
     private List<Program> globalForbidden;
 
+    // pass encoding clauses to the solver as templates instantiated natively for each test
+    private boolean templateInstantiation = false;
+
+    // substitute input values of concrete tests into encoding clauses and simplify them
+    private boolean partialEvaluation = true;
+
+    private SolverLimits limits = SolverLimits.NONE;
+
     private Logger logger = LoggerFactory.getLogger(TreeBoundedSynthesis.class);
 
     private class EncodingResult {
@@ -82,6 +90,22 @@ public class TreeBoundedSynthesis extends SynthesisWithLearning {
         this.globalForbidden = new ArrayList<>();
     }
 
+    public void setTemplateInstantiation(boolean templateInstantiation) {
+        this.templateInstantiation = templateInstantiation;
+    }
+
+    public void setPartialEvaluation(boolean partialEvaluation) {
+        this.partialEvaluation = partialEvaluation;
+    }
+
+    /**
+     * When the solver gives up within the limits, nothing is synthesized and nothing is learned
+     */
+    @Override
+    public void setLimits(SolverLimits limits) {
+        this.limits = limits;
+    }
+
     @Override
     public Either<Pair<Program, Map<Parameter, Constant>>, Node> synthesizeOrLearn(List<TestCase> testSuite,
                                                                                    Multiset<Node> components) {
@@ -99,8 +123,18 @@ public class TreeBoundedSynthesis extends SynthesisWithLearning {
         List<Node> contextClauses = new ArrayList<>();
         List<Node> synthesisClauses = new ArrayList<>();
         for (TestCase test : testSuite) {
+            if (partialEvaluation && !templateInstantiation && test.getKind() == TestCase.Kind.CONCRETE) {
+                synthesisClauses.addAll(partiallyEvaluate(result.get().clauses, test));
+                contextClauses.add(new Equal(root, test.getOutputValue()).instantiate(test));
+                continue;
+            }
             for (Node node : result.get().clauses) {
-                synthesisClauses.add(node.instantiate(test));
+                if (templateInstantiation) {
+                    synthesisClauses.add(new Instantiation(node, test));
+                } else {
+                    // instances of the same branches are shared between clauses
+                    synthesisClauses.add(NodeFactory.internAll(node.instantiate(test)));
+                }
             }
             contextClauses.addAll(testToConstraint(test, root));
         }
@@ -130,13 +164,32 @@ public class TreeBoundedSynthesis extends SynthesisWithLearning {
                 }
             }
         }
-        Either<Map<Variable, Constant>, Node> solverResult = solver.getModelOrInterpolant(contextClauses, synthesisClauses);
-        if (solverResult.isLeft()) {
-            Pair<Program, Map<Parameter, Constant>> decoded = decode(solverResult.left().value(), root, result.get());
+        SolverResult<Map<Variable, Constant>, Node> solverResult =
+                solver.getModelOrInterpolant(contextClauses, synthesisClauses, limits);
+        if (solverResult.isSat()) {
+            Pair<Program, Map<Parameter, Constant>> decoded = decode(solverResult.getModel(), root, result.get());
             return Either.left(decoded);
+        } else if (solverResult.isUnsat()) {
+            return Either.right(solverResult.getConflict());
         } else {
-            return Either.right(solverResult.right().value());
+            logger.warn("synthesis query unknown (" + solverResult.getReason() + "), giving up on bound " + bound);
+            return Either.right(new Dummy(BoolType.TYPE));
+        }
+    }
+
+    /**
+     * Inputs of the test are replaced with their values, so that e.g. choices of variable leaves become constant.
+     * Clauses that are simplified to true are dropped.
+     */
+    static List<Node> partiallyEvaluate(List<Node> clauses, TestCase test) {
+        List<Node> evaluated = new ArrayList<>();
+        for (Node clause : clauses) {
+            Node simplified = Simplifier.simplify(Traverse.substitute(clause, test.getInputValues()).instantiate(test));
+            if (!simplified.equals(BoolConst.TRUE)) {
+                evaluated.add(NodeFactory.internAll(simplified));
+            }
         }
+        return evaluated;
     }
 
     private List<Node> testToConstraint(TestCase testCase, Variable output) {
@@ -2,65 +2,100 @@ package sg.edu.nus.comp.codis;
 
 import sg.edu.nus.comp.codis.ast.*;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Set;
 
 /**
+ * Assigns dense int ids to variables. Backends keep their constants in arrays indexed by these ids,
+ * names "v1", "v2", ... are only built when a symbol is declared.
+ *
  * Created by Sergey Mechtaev on 7/4/2016.
  */
 public class VariableMarshaller {
 
-    private int index;
+    // number of ids assigned before the last clear, names continue from it
+    private int base;
 
-    private HashMap<String, Variable> stringToVariable;
-    private HashMap<Variable, String> variableToString;
+    private int size;
+
+    private Variable[] variables;
+    private String[] names;
+    private HashMap<Variable, Integer> ids;
 
     public VariableMarshaller() {
-        this.index = 0;
-        this.stringToVariable = new HashMap<>();
-        this.variableToString = new HashMap<>();
+        this.base = 0;
+        this.size = 0;
+        this.variables = new Variable[16];
+        this.names = new String[16];
+        this.ids = new HashMap<>();
     }
 
-    private static String getLiteral(Variable variable) {
-        return variable.toString();
-
-//        if (variable instanceof ProgramVariable) {
-//            return "v";
-//        } else if (variable instanceof Parameter) {
-//            return "p";
-//        } else if (variable instanceof Hole) {
-//            return "h";
-//        } else if (variable instanceof Location) {
-//            return "l";
-//        } else if (variable instanceof ComponentInput) {
-//            return "ci";
-//        } else if (variable instanceof ComponentOutput) {
-//            return "co";
-//        } else if (variable instanceof TestInstance) {
-//            return "i";
-//        } else {
-//            return "unknown";
-//        }
+    /**
+     * @return id of the variable, new variables get the next free id
+     */
+    public int getId(Variable variable) {
+        Integer id = ids.get(variable);
+        if (id != null) {
+            return id;
+        }
+        if (size == variables.length) {
+            variables = Arrays.copyOf(variables, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+        variables[size] = variable;
+        ids.put(variable, size);
+        return size++;
     }
 
-    public String toString(Variable variable) {
-        if (variableToString.containsKey(variable)) {
-            return variableToString.get(variable);
-        } else {
-            index++;
-            String repr = "v" + index;//getLiteral(variable) + index;
-            variableToString.put(variable, repr);
-            stringToVariable.put(repr, variable);
-            return repr;
+    public Variable toVariable(int id) {
+        if (id < 0 || id >= size) {
+            return null;
         }
+        return variables[id];
+    }
+
+    public String toString(int id) {
+        String name = names[id];
+        if (name == null) {
+            name = "v" + (base + id + 1);
+            names[id] = name;
+        }
+        return name;
+    }
+
+    public String toString(Variable variable) {
+        return toString(getId(variable));
     }
 
     public Variable toVariable(String string) {
-        return stringToVariable.get(string);
+        if (!string.startsWith("v")) {
+            return null;
+        }
+        try {
+            return toVariable(Integer.parseInt(string.substring(1)) - base - 1);
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     public Set<Variable> getVariables() {
-        return variableToString.keySet();
+        return ids.keySet();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forget all variables, names are never reused
+     */
+    public void clear() {
+        base += size;
+        size = 0;
+        Arrays.fill(variables, null);
+        Arrays.fill(names, null);
+        ids.clear();
     }
 
 }
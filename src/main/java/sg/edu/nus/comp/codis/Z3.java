@@ -7,19 +7,12 @@ import org.slf4j.LoggerFactory;
 import sg.edu.nus.comp.codis.ast.*;
 import sg.edu.nus.comp.codis.ast.theory.*;
 
-import java.io.*;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Created by Sergey Mechtaev on 7/4/2016.
  */
-public class Z3 implements Solver, InterpolatingSolver {
+public class Z3 implements Solver, InterpolatingSolver, IncrementalSolver, Interruptible {
 
     private Logger logger = LoggerFactory.getLogger(Z3.class);
 
@@ -29,19 +22,38 @@ public class Z3 implements Solver, InterpolatingSolver {
     private InterpolationContext globalIContext;
     private com.microsoft.z3.Solver iSolver;
 
+    // terms belong to the context they were created in, so each context has its own cache
+    private TranslationCache<Expr> cache;
+    private TranslationCache<Expr> iCache;
+
+    private volatile boolean interrupted = false;
+
+    // model of the last query, invalidated by the next one
+    private LazyModel lastModel;
+
     private Z3(boolean interpolating) {
-        if (!interpolating) {
+        this(!interpolating, interpolating);
+    }
+
+    /**
+     * Pooled backends answer both kinds of queries, so they create both contexts
+     */
+    Z3(boolean solving, boolean interpolating) {
+        if (solving) {
             HashMap<String, String> cfg = new HashMap<>();
             cfg.put("model", "true");
             this.globalContext = new Context(cfg);
             this.solver = globalContext.mkSolver();
-        } else {
+        }
+        if (interpolating) {
             HashMap<String, String> icfg = new HashMap<>();
             icfg.put("model", "true");
             icfg.put("proof", "true");
             this.globalIContext = new InterpolationContext(icfg);
             this.iSolver = globalIContext.mkSolver();
         }
+        this.cache = new TranslationCache<>(TranslationCache.DEFAULT_CAPACITY);
+        this.iCache = new TranslationCache<>(TranslationCache.DEFAULT_CAPACITY);
     }
 
     public static Solver buildSolver() {
@@ -53,54 +65,78 @@ public class Z3 implements Solver, InterpolatingSolver {
     }
 
     public void dispose() {
-        this.globalContext.dispose();
-        this.globalIContext.dispose();
+        invalidateModel();
+        if (this.globalContext != null) {
+            this.globalContext.dispose();
+        }
+        if (this.globalIContext != null) {
+            this.globalIContext.dispose();
+        }
+    }
+
+    @Override
+    public void interrupt() {
+        interrupted = true;
+        if (globalContext != null) {
+            globalContext.interrupt();
+        }
+        if (globalIContext != null) {
+            globalIContext.interrupt();
+        }
+    }
+
+    /**
+     * Limits are reapplied on every query, Z3 treats rlimit 0 as unlimited
+     */
+    private void setLimits(Context ctx, com.microsoft.z3.Solver solver, SolverLimits limits) {
+        Params params = ctx.mkParams();
+        params.add("timeout", (int) Math.min(Integer.MAX_VALUE, limits.getTimeout().orElse((long) Integer.MAX_VALUE)));
+        params.add("rlimit", (int) Math.min(Integer.MAX_VALUE, limits.getResourceLimit().orElse(0L)));
+        solver.setParameters(params);
+    }
+
+    @Override
+    public void resetInterrupt() {
+        interrupted = false;
     }
 
     @Override
     public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses,
                                                                       List<Node> assumptions) {
+        return getModelOrCore(clauses, assumptions, SolverLimits.NONE).toEither();
+    }
 
+    @Override
+    public SolverResult<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses,
+                                                                            List<Node> assumptions,
+                                                                            SolverLimits limits) {
+
+        invalidateModel();
         solver.reset();
-        VariableMarshaller marshaller = new VariableMarshaller();
-        List<FuncDecl> decls = new ArrayList<>();
+        setLimits(globalContext, solver, limits);
+        if (cache.isFull()) {
+            cache.clear();
+        }
+        Set<Variable> variables = new HashSet<>();
         for (Node clause : clauses) {
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(globalContext, marshaller);
-            clause.accept(visitor);
-            solver.add((BoolExpr)visitor.getExpr());
-            decls.addAll(visitor.getDecls());
+            solver.add((BoolExpr)translate(globalContext, cache, clause, variables));
         }
         ArrayList<BoolExpr> assumptionExprs = new ArrayList<>();
         for (Node assumption : assumptions) {
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(globalContext, marshaller);
-            assumption.accept(visitor);
-            assumptionExprs.add((BoolExpr)visitor.getExpr());
-            decls.addAll(visitor.getDecls());
-        }
-
-        if (logger.isTraceEnabled()) {
-            SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss-SSS");
-            Date now = new Date();
-            Path logsmt = Paths.get("cbs" + sdf.format(now) + ".smt2");
-            try {
-                List<String> entries = new ArrayList<>();
-                entries.add("(set-option :produce-models true)");
-                entries.addAll(new HashSet<>(decls.stream().map(Object::toString).collect(Collectors.toList())));
-                entries.addAll(Arrays.asList(solver.getAssertions()).stream().map(c -> "(assert " + c + ")").collect(Collectors.toList()));
-                entries.add("(check-sat)");
-                entries.add("(get-model)");
-                Files.write(logsmt, entries, Charset.forName("UTF-8"));
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            assumptionExprs.add((BoolExpr)translate(globalContext, cache, assumption, variables));
         }
 
         BoolExpr[] assumptionArray = assumptionExprs.toArray(new BoolExpr[assumptionExprs.size()]);
 
+        // context interrupt only stops a running check
+        if (interrupted) {
+            return SolverResult.unknown("interrupted");
+        }
         Status status = solver.check(assumptionArray);
         if (status.equals(Status.SATISFIABLE)) {
             Model model = solver.getModel();
-            return Either.left(getAssignment(globalContext, model, marshaller));
+            lastModel = getAssignment(globalContext, model, cache, variables);
+            return SolverResult.sat(lastModel);
         } else if (status.equals(Status.UNSATISFIABLE)) {
             ArrayList<Node> unsatCore = new ArrayList<>();
             Expr[] unsatCoreArray = solver.getUnsatCore();
@@ -110,45 +146,107 @@ public class Z3 implements Solver, InterpolatingSolver {
                     unsatCore.add(assumptions.get(i));
                 }
             }
-            return Either.right(unsatCore);
+            return SolverResult.unsat(unsatCore);
         } else {
-            throw new UnsupportedOperationException();
+            return SolverResult.unknown(solver.getReasonUnknown());
         }
     }
 
-    private Map<Variable, Constant> getAssignment(Context ctx, Model model, VariableMarshaller marshaller) {
-        HashMap<Variable, Constant> assingment = new HashMap<>();
-        for (Variable variable: marshaller.getVariables()) {
-            if (TypeInference.typeOf(variable).equals(IntType.TYPE)) {
-                Expr result = model.eval(ctx.mkIntConst(marshaller.toString(variable)), true);
-                if (result instanceof IntNum) {
-                    int value = ((IntNum)result).getInt();
-                    assingment.put(variable, IntConst.of(value));
-                } else {
-                    throw new RuntimeException("unsupported Z3 expression type");
-                }
-            } else if (TypeInference.typeOf(variable).equals(BoolType.TYPE)) {
-                Expr result = model.eval(ctx.mkBoolConst(marshaller.toString(variable)), true);
-                try {
-                    boolean value = result.isTrue();
-                    assingment.put(variable, BoolConst.of(value));
-                } catch (Z3Exception ex){
-                    throw new RuntimeException("wrong variable type");
-                }
-            } else if (TypeInference.typeOf(variable) instanceof BVType) {
-                int size = ((BVType) TypeInference.typeOf(variable)).getSize();
-                Expr result = model.eval(ctx.mkBVConst(marshaller.toString(variable), size), true);
-                try {
-                    long value = ((BitVecNum)result).getLong();
-                    assingment.put(variable, BVConst.ofLong(value, size));
-                } catch (Z3Exception ex){
-                    throw new RuntimeException("wrong variable type");
-                }
+    /**
+     * Translate node reusing cached terms, variables of the node are added to the given set
+     */
+    private Expr translate(Context ctx, TranslationCache<Expr> cache, Node node, Set<Variable> variables) {
+        if (node instanceof Instantiation) {
+            return instantiate(ctx, cache, (Instantiation) node, variables);
+        }
+        Expr expr = cache.get(node);
+        if (expr != null) {
+            variables.addAll(node.getSummary().getVariables());
+            return expr;
+        }
+        NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(ctx, cache);
+        node.accept(visitor);
+        variables.addAll(visitor.getVariables());
+        cache.put(node, visitor.getExpr());
+        return visitor.getExpr();
+    }
+
+    /**
+     * Template is translated once, test instances are substituted for its test-instantiable variables
+     */
+    private Expr instantiate(Context ctx, TranslationCache<Expr> cache, Instantiation node, Set<Variable> variables) {
+        Set<Variable> templateVariables = new HashSet<>();
+        Expr template = translate(ctx, cache, node.getTemplate(), templateVariables);
+        List<Expr> from = new ArrayList<>();
+        List<Expr> to = new ArrayList<>();
+        for (Variable variable : templateVariables) {
+            if (variable.isTestInstantiable()) {
+                from.add(translate(ctx, cache, variable, new HashSet<>()));
+                to.add(translate(ctx, cache, new TestInstance(variable, node.getTest()), variables));
             } else {
-                throw new UnsupportedOperationException();
+                variables.add(variable);
+            }
+        }
+        Expr expr = cache.get(node);
+        if (expr == null) {
+            expr = template.substitute(from.toArray(new Expr[from.size()]), to.toArray(new Expr[to.size()]));
+            cache.put(node, expr);
+        }
+        return expr;
+    }
+
+    public TranslationCache<?> getTranslationCache() {
+        return cache;
+    }
+
+    /**
+     * Variables are evaluated on demand, the model is valid until the next query reuses the names
+     */
+    private LazyModel getAssignment(Context ctx,
+                                    Model model,
+                                    TranslationCache<Expr> cache,
+                                    Set<Variable> variables) {
+        return new LazyModel(variables, variable -> evaluate(model, cache, variable));
+    }
+
+    private Constant evaluate(Model model, TranslationCache<Expr> cache, Variable variable) {
+        Expr constant = cache.getConstant(cache.getMarshaller().getId(variable));
+        if (constant == null) {
+            throw new RuntimeException("undeclared variable " + variable);
+        }
+        Type type = variable.getType();
+        if (type.equals(IntType.TYPE)) {
+            Expr result = model.eval(constant, true);
+            if (result instanceof IntNum) {
+                return IntConst.of(((IntNum)result).getInt());
+            } else {
+                throw new RuntimeException("unsupported Z3 expression type");
             }
+        } else if (type.equals(BoolType.TYPE)) {
+            Expr result = model.eval(constant, true);
+            try {
+                return BoolConst.of(result.isTrue());
+            } catch (Z3Exception ex){
+                throw new RuntimeException("wrong variable type");
+            }
+        } else if (type instanceof BVType) {
+            int size = ((BVType) type).getSize();
+            Expr result = model.eval(constant, true);
+            try {
+                return BVConst.ofLong(((BitVecNum)result).getLong(), size);
+            } catch (Z3Exception ex){
+                throw new RuntimeException("wrong variable type");
+            }
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private void invalidateModel() {
+        if (lastModel != null) {
+            lastModel.invalidate();
+            lastModel = null;
         }
-        return assingment;
     }
 
     @Override
@@ -164,32 +262,41 @@ public class Z3 implements Solver, InterpolatingSolver {
 
     @Override
     public Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses) {
+        return getModelOrInterpolant(leftClauses, rightClauses, SolverLimits.NONE).toEither();
+    }
+
+    @Override
+    public SolverResult<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses,
+                                                                             List<Node> rightClauses,
+                                                                             SolverLimits limits) {
+        invalidateModel();
         iSolver.reset();
-        VariableMarshaller marshaller = new VariableMarshaller();
-        //List<FuncDecl> decls = new ArrayList<>();
+        setLimits(globalIContext, iSolver, limits);
+        if (iCache.isFull()) {
+            iCache.clear();
+        }
+        Set<Variable> variables = new HashSet<>();
         BoolExpr left = globalIContext.mkBool(true);
 
         for (Node leftClause : leftClauses) {
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(globalIContext, marshaller);
-            leftClause.accept(visitor);
-            //decls.addAll(visitor.getDecls());
-            left = globalIContext.mkAnd(left, (BoolExpr)visitor.getExpr());
+            left = globalIContext.mkAnd(left, (BoolExpr)translate(globalIContext, iCache, leftClause, variables));
         }
         BoolExpr right = globalIContext.mkBool(true);
         for (Node rightClause : rightClauses) {
-            NodeTranslatorVisitor visitor = new NodeTranslatorVisitor(globalIContext, marshaller);
-            rightClause.accept(visitor);
-            //decls.addAll(visitor.getDecls());
-            right = globalIContext.mkAnd(right, (BoolExpr)visitor.getExpr());
+            right = globalIContext.mkAnd(right, (BoolExpr)translate(globalIContext, iCache, rightClause, variables));
         }
 
         iSolver.add(left);
         iSolver.add(right);
 
+        if (interrupted) {
+            return SolverResult.unknown("interrupted");
+        }
         Status status = iSolver.check();
         if (status.equals(Status.SATISFIABLE)) {
             Model model = iSolver.getModel();
-            return Either.left(getAssignment(globalIContext, model, marshaller));
+            lastModel = getAssignment(globalIContext, model, cache, variables);
+            return SolverResult.sat(lastModel);
         } else if (status.equals(Status.UNSATISFIABLE)) {
             BoolExpr pat = globalIContext.mkAnd(globalIContext.MkInterpolant(left), right);
             Params params = globalIContext.mkParams();
@@ -198,13 +305,150 @@ public class Z3 implements Solver, InterpolatingSolver {
             //Expr[] interps = globalIContext.GetInterpolant(proof, pat, params);
             //System.out.println("\nOK, the interpolant is: " + interps[0]);
             //return Either.right(convertZ3ToNode(interps[0], marshaller));
-            return Either.right(new Dummy(BoolType.TYPE));
+            return SolverResult.unsat(new Dummy(BoolType.TYPE));
         } else {
-            throw new UnsupportedOperationException();
+            return SolverResult.unknown(iSolver.getReasonUnknown());
         }
 
     }
 
+    @Override
+    public SolverSession openSession() {
+        if (globalContext != null) {
+            return new Session(globalContext);
+        } else {
+            return new Session(globalIContext);
+        }
+    }
+
+    private class Session implements SolverSession {
+
+        private Context ctx;
+        private com.microsoft.z3.Solver session;
+
+        // asserted terms keep their variable names, so the cache is only cleared by rebuilding the session
+        private TranslationCache<Expr> cache;
+
+        // clauses and their variables asserted in each scope
+        private Stack<List<Node>> clauses;
+        private Stack<Set<Variable>> scopes;
+
+        private LazyModel sessionModel;
+
+        Session(Context ctx) {
+            this.ctx = ctx;
+            this.session = ctx.mkSolver();
+            this.cache = new TranslationCache<>(TranslationCache.DEFAULT_CAPACITY);
+            this.clauses = new Stack<>();
+            this.clauses.push(new ArrayList<>());
+            this.scopes = new Stack<>();
+            this.scopes.push(new HashSet<>());
+        }
+
+        /**
+         * Reassert all scopes with a fresh cache when the marshaller outgrows the cache bound
+         */
+        private void rebuildIfFull() {
+            if (!cache.isFull()) {
+                return;
+            }
+            session.reset();
+            cache.clear();
+            for (int i = 0; i < clauses.size(); i++) {
+                if (i > 0) {
+                    session.push();
+                }
+                Set<Variable> variables = new HashSet<>();
+                for (Node clause : clauses.get(i)) {
+                    session.add((BoolExpr)translate(ctx, cache, clause, variables));
+                }
+                scopes.set(i, variables);
+            }
+        }
+
+        private void invalidateSessionModel() {
+            if (sessionModel != null) {
+                sessionModel.invalidate();
+                sessionModel = null;
+            }
+        }
+
+        @Override
+        public void add(List<Node> clauses) {
+            invalidateSessionModel();
+            rebuildIfFull();
+            for (Node clause : clauses) {
+                session.add((BoolExpr)translate(ctx, cache, clause, scopes.peek()));
+                this.clauses.peek().add(clause);
+            }
+        }
+
+        @Override
+        public void push() {
+            invalidateSessionModel();
+            session.push();
+            clauses.push(new ArrayList<>());
+            scopes.push(new HashSet<>());
+        }
+
+        @Override
+        public void pop() {
+            if (scopes.size() == 1) {
+                throw new RuntimeException("no scope to pop");
+            }
+            invalidateSessionModel();
+            session.pop();
+            clauses.pop();
+            scopes.pop();
+        }
+
+        @Override
+        public SolverResult<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> assumptions,
+                                                                                SolverLimits limits) {
+            invalidateSessionModel();
+            rebuildIfFull();
+            setLimits(ctx, session, limits);
+            Set<Variable> variables = new HashSet<>();
+            for (Set<Variable> scope : scopes) {
+                variables.addAll(scope);
+            }
+            ArrayList<BoolExpr> assumptionExprs = new ArrayList<>();
+            for (Node assumption : assumptions) {
+                assumptionExprs.add((BoolExpr)translate(ctx, cache, assumption, variables));
+            }
+            BoolExpr[] assumptionArray = assumptionExprs.toArray(new BoolExpr[assumptionExprs.size()]);
+
+            Status status = session.check(assumptionArray);
+            if (status.equals(Status.SATISFIABLE)) {
+                sessionModel = getAssignment(ctx, session.getModel(), cache, variables);
+                return SolverResult.sat(sessionModel);
+            } else if (status.equals(Status.UNSATISFIABLE)) {
+                ArrayList<Node> unsatCore = new ArrayList<>();
+                Expr[] unsatCoreArray = session.getUnsatCore();
+                List<Expr> unsatCoreExprs = Arrays.asList(unsatCoreArray);
+                for (int i=0; i<assumptionExprs.size(); i++) {
+                    if (unsatCoreExprs.contains(assumptionExprs.get(i))) {
+                        unsatCore.add(assumptions.get(i));
+                    }
+                }
+                return SolverResult.unsat(unsatCore);
+            } else {
+                return SolverResult.unknown(session.getReasonUnknown());
+            }
+        }
+
+        @Override
+        public void dispose() {
+            invalidateSessionModel();
+            session.reset();
+            cache.clear();
+            clauses.clear();
+            clauses.push(new ArrayList<>());
+            scopes.clear();
+            scopes.push(new HashSet<>());
+        }
+    }
+
     //TODO: boolean symbols true and false are not supported (if they are possible to get)
     private Node convertZ3ToNode(Expr expr, VariableMarshaller marshaller) {
         if (expr.isAdd()) {
@@ -361,14 +605,16 @@ public class Z3 implements Solver, InterpolatingSolver {
 
         private Stack<Expr> exprs;
 
-        private List<FuncDecl> decls;
+        private Set<Variable> variables;
+        private TranslationCache<Expr> cache;
         private VariableMarshaller marshaller;
         private Context ctx;
 
-        NodeTranslatorVisitor(Context ctx, VariableMarshaller marshaller) {
-            this.marshaller = marshaller;
+        NodeTranslatorVisitor(Context ctx, TranslationCache<Expr> cache) {
+            this.cache = cache;
+            this.marshaller = cache.getMarshaller();
             this.exprs = new Stack<>();
-            this.decls = new ArrayList<>();
+            this.variables = new HashSet<>();
             this.ctx = ctx;
         }
 
@@ -377,24 +623,31 @@ public class Z3 implements Solver, InterpolatingSolver {
             return exprs.peek();
         }
 
-        List<FuncDecl> getDecls() {
-            return decls;
+        Set<Variable> getVariables() {
+            return variables;
         }
 
         private void processVariable(Context ctx, Variable variable) {
-            if (TypeInference.typeOf(variable).equals(IntType.TYPE)) {
-                exprs.push(ctx.mkIntConst(marshaller.toString(variable)));
-                decls.add(ctx.mkConstDecl(marshaller.toString(variable), ctx.getIntSort()));
-            } else if (TypeInference.typeOf(variable).equals(BoolType.TYPE)) {
-                exprs.push(ctx.mkBoolConst(marshaller.toString(variable)));
-                decls.add(ctx.mkConstDecl(marshaller.toString(variable), ctx.getBoolSort()));
-            } else if (TypeInference.typeOf(variable) instanceof BVType) {
-                int size = ((BVType) TypeInference.typeOf(variable)).getSize();
-                exprs.push(ctx.mkBVConst(marshaller.toString(variable), size));
-                decls.add(ctx.mkConstDecl(marshaller.toString(variable), ctx.mkBitVecSort(size)));
+            variables.add(variable);
+            int id = marshaller.getId(variable);
+            Expr cached = cache.getConstant(id);
+            if (cached != null) {
+                exprs.push(cached);
+                return;
+            }
+            Expr expr;
+            Type type = variable.getType();
+            if (type.equals(IntType.TYPE)) {
+                expr = ctx.mkIntConst(marshaller.toString(id));
+            } else if (type.equals(BoolType.TYPE)) {
+                expr = ctx.mkBoolConst(marshaller.toString(id));
+            } else if (type instanceof BVType) {
+                expr = ctx.mkBVConst(marshaller.toString(id), ((BVType) type).getSize());
             } else {
                 throw new UnsupportedOperationException();
             }
+            cache.putConstant(id, expr);
+            exprs.push(expr);
         }
 
         @Override
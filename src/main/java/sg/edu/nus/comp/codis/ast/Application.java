@@ -7,4 +7,9 @@ import java.util.List;
  */
 public abstract class Application extends Node {
     public abstract List<Node> getArgs();
+
+    /**
+     * @return application of the same operator to given arguments
+     */
+    public abstract Application withArgs(List<Node> args);
 }
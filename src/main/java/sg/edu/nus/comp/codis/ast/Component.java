@@ -16,7 +16,7 @@ public class Component {
     private Node semantics;
 
     public Component(Node semantics) {
-        this.semantics = semantics;
+        this.semantics = NodeFactory.internAll(semantics);
     }
 
     public Node getSemantics() {
@@ -24,11 +24,11 @@ public class Component {
     }
 
     public Set<Hole> getInputs() {
-        return Traverse.collectByType(this.semantics, Hole.class);
+        return semantics.getSummary().getVariables(Hole.class);
     }
 
     public boolean isLeaf() {
-        return this.getInputs().isEmpty();
+        return !semantics.getSummary().hasVariables(Hole.class);
     }
 
     public Type getType() {
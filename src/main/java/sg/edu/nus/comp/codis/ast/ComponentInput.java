@@ -50,7 +50,7 @@ public class ComponentInput extends Variable {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(component).
                 append(hole).
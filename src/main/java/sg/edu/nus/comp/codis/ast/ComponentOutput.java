@@ -42,7 +42,7 @@ public class ComponentOutput extends Variable {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(component).
                 toHashCode();
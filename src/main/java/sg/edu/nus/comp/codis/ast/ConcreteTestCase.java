@@ -0,0 +1,154 @@
+package sg.edu.nus.comp.codis.ast;
+
+import sg.edu.nus.comp.codis.ast.theory.BVConst;
+import sg.edu.nus.comp.codis.ast.theory.BoolConst;
+import sg.edu.nus.comp.codis.ast.theory.Equal;
+import sg.edu.nus.comp.codis.ast.theory.IntConst;
+
+import java.util.*;
+
+/**
+ * Test that assigns constants to inputs and output. Values are stored as longs, bit-vectors as unsigned values,
+ * inputs are ordered by name.
+ * Defines structural equality, so that tests can be deduplicated and used as cache keys.
+ */
+public class ConcreteTestCase extends TestCase {
+
+    private ProgramVariable[] inputs;
+
+    private long[] values;
+
+    private Type outputType;
+
+    private long outputValue;
+
+    private int hash;
+
+    // clauses over inputs, shared by all calls of getConstraints
+    private List<Node> inputClauses;
+
+    private Map<ProgramVariable, Constant> inputValues;
+
+    public ConcreteTestCase(Map<ProgramVariable, ? extends Constant> assignment, Constant outputValue) {
+        this.inputs = assignment.keySet().toArray(new ProgramVariable[assignment.size()]);
+        Arrays.sort(this.inputs, Comparator.comparing(ProgramVariable::getName)
+                                           .thenComparing(v -> v.getType().toString()));
+        this.values = new long[inputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            this.values[i] = encode(assignment.get(inputs[i]));
+        }
+        this.outputType = TypeInference.typeOf(outputValue);
+        this.outputValue = encode(outputValue);
+        this.hash = 31 * (31 * (31 * Arrays.hashCode(inputs) + Arrays.hashCode(values))
+                          + outputType.hashCode()) + Long.hashCode(this.outputValue);
+    }
+
+    private static long encode(Constant constant) {
+        if (constant instanceof BoolConst) {
+            return ((BoolConst) constant).getValue() ? 1 : 0;
+        } else if (constant instanceof IntConst) {
+            return ((IntConst) constant).getValue();
+        } else if (constant instanceof BVConst) {
+            // unsigned, as produced by evaluation and by solver models
+            int size = ((BVConst) constant).getType().getSize();
+            long mask = size == 64 ? -1L : (1L << size) - 1;
+            return ((BVConst) constant).getLong() & mask;
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static Constant decode(Type type, long value) {
+        if (type.equals(BoolType.TYPE)) {
+            return BoolConst.of(value != 0);
+        } else if (type.equals(IntType.TYPE)) {
+            return IntConst.of((int) value);
+        } else if (type instanceof BVType) {
+            return BVConst.ofLong(value, ((BVType) type).getSize());
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public int getInputCount() {
+        return inputs.length;
+    }
+
+    public ProgramVariable getInput(int index) {
+        return inputs[index];
+    }
+
+    /**
+     * @return value of the input with given index, booleans are 0 or 1
+     */
+    public long getValue(int index) {
+        return values[index];
+    }
+
+    public long getOutputLong() {
+        return outputValue;
+    }
+
+    @Override
+    public Kind getKind() {
+        return Kind.CONCRETE;
+    }
+
+    @Override
+    public Map<ProgramVariable, Constant> getInputValues() {
+        if (inputValues == null) {
+            Map<ProgramVariable, Constant> map = new HashMap<>();
+            for (int i = 0; i < inputs.length; i++) {
+                map.put(inputs[i], decode(inputs[i].getType(), values[i]));
+            }
+            inputValues = Collections.unmodifiableMap(map);
+        }
+        return inputValues;
+    }
+
+    @Override
+    public Constant getOutputValue() {
+        return decode(outputType, outputValue);
+    }
+
+    @Override
+    public List<Node> getConstraints(Variable output) {
+        if (inputClauses == null) {
+            List<Node> clauses = new ArrayList<>();
+            for (int i = 0; i < inputs.length; i++) {
+                clauses.add(new Equal(inputs[i], decode(inputs[i].getType(), values[i])));
+            }
+            inputClauses = clauses;
+        }
+        ArrayList<Node> clauses = new ArrayList<>(inputClauses.size() + 1);
+        clauses.addAll(inputClauses);
+        clauses.add(new Equal(output, getOutputValue()));
+        return clauses;
+    }
+
+    @Override
+    public Type getOutputType() {
+        return outputType;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ConcreteTestCase))
+            return false;
+        if (obj == this)
+            return true;
+
+        ConcreteTestCase rhs = (ConcreteTestCase) obj;
+        return hash == rhs.hash
+                && outputValue == rhs.outputValue
+                && outputType.equals(rhs.outputType)
+                && Arrays.equals(values, rhs.values)
+                && Arrays.equals(inputs, rhs.inputs);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+}
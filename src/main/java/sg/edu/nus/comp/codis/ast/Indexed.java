@@ -51,7 +51,7 @@ public class Indexed extends Variable {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(variable).
                 append(index).
@@ -0,0 +1,70 @@
+package sg.edu.nus.comp.codis.ast;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+/**
+ * Deferred template.instantiate(test). Solvers translate the template once and produce each test
+ * by substituting test instances natively, visitors see the instantiated formula.
+ */
+public class Instantiation extends Node {
+
+    private Node template;
+
+    private TestCase test;
+
+    public Instantiation(Node template, TestCase test) {
+        this.template = template;
+        this.test = test;
+    }
+
+    public Node getTemplate() {
+        return template;
+    }
+
+    public TestCase getTest() {
+        return test;
+    }
+
+    public Node expand() {
+        return template.instantiate(test);
+    }
+
+    @Override
+    public void accept(BottomUpVisitor visitor) {
+        expand().accept(visitor);
+    }
+
+    @Override
+    public void accept(TopDownVisitor visitor) {
+        expand().accept(visitor);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Instantiation))
+            return false;
+        if (obj == this)
+            return true;
+
+        Instantiation rhs = (Instantiation) obj;
+        return new EqualsBuilder().
+                append(template, rhs.template).
+                append(test, rhs.test).
+                isEquals();
+    }
+
+    @Override
+    protected int computeHashCode() {
+        return new HashCodeBuilder(17, 31).
+                append(template).
+                append(test).
+                toHashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "T(" + template + ")[" + test + "]";
+    }
+
+}
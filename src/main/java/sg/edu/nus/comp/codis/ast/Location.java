@@ -61,7 +61,7 @@ public class Location extends Variable {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(variable).
                 toHashCode();
@@ -1,5 +1,6 @@
 package sg.edu.nus.comp.codis.ast;
 
+import java.util.Optional;
 import java.util.function.Predicate;
 
 /**
@@ -9,6 +10,51 @@ public abstract class Node {
     public abstract void accept(BottomUpVisitor visitor);
     public abstract void accept(TopDownVisitor visitor);
 
+    // nodes are immutable, so the hash is computed once
+    private int hash;
+
+    @Override
+    public final int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = computeHashCode();
+            hash = h;
+        }
+        return h;
+    }
+
+    /**
+     * Nodes that define structural equality override this instead of hashCode
+     */
+    protected int computeHashCode() {
+        return super.hashCode();
+    }
+
+    // inferred by TypeInference.typeOf
+    private Type type;
+
+    private NodeSummary summary;
+
+    NodeSummary getCachedSummary() {
+        return summary;
+    }
+
+    void setCachedSummary(NodeSummary summary) {
+        this.summary = summary;
+    }
+
+    public NodeSummary getSummary() {
+        return NodeSummary.of(this);
+    }
+
+    Type getCachedType() {
+        return type;
+    }
+
+    void setCachedType(Type type) {
+        this.type = type;
+    }
+
     /**
      * Rename variables under condition
      */
@@ -33,16 +79,25 @@ public abstract class Node {
         });
     }
 
-    private static boolean seen;
-
     public boolean contains(Node subnode) {
-        seen = false;
-        Traverse.transform(this, n -> {
-            if (n.equals(subnode)) {
-                seen = true;
-            }
-            return n;
-        });
-        return seen;
+        if (subnode instanceof Variable && summary != null && summary.hasCachedVariables()) {
+            return summary.getVariables(((Variable) subnode).getClass()).contains(subnode);
+        }
+        return anyMatch(n -> n == subnode || n.equals(subnode));
+    }
+
+    /**
+     * @return first subnode in pre-order that satisfies the predicate, including this node
+     */
+    public Optional<Node> findFirst(Predicate<Node> predicate) {
+        return Traverse.findFirst(this, predicate);
+    }
+
+    public boolean anyMatch(Predicate<Node> predicate) {
+        return findFirst(predicate).isPresent();
+    }
+
+    public boolean allMatch(Predicate<Node> predicate) {
+        return !findFirst(predicate.negate()).isPresent();
     }
 }
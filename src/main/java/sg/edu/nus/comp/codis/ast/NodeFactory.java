@@ -0,0 +1,27 @@
+package sg.edu.nus.comp.codis.ast;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Hash-consing of nodes: structurally equal nodes are mapped to a single shared instance, so that
+ * equality of interned nodes is decided by comparing references of their children.
+ * Nodes are held weakly and the factory is thread-safe.
+ */
+public class NodeFactory {
+
+    private static final Interner<Node> interner = Interners.newWeakInterner();
+
+    @SuppressWarnings("unchecked")
+    public static <T extends Node> T intern(T node) {
+        return (T) interner.intern(node);
+    }
+
+    /**
+     * Interns the node and all its subnodes
+     */
+    public static Node internAll(Node node) {
+        return Traverse.transform(node, NodeFactory::intern);
+    }
+
+}
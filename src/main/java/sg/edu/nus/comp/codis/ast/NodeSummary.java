@@ -0,0 +1,167 @@
+package sg.edu.nus.comp.codis.ast;
+
+import java.util.*;
+
+/**
+ * Free variables grouped by their class, size and depth of a node. Size and depth are computed once per node
+ * from the summaries of its arguments. Variables are collected on first request and kept only in the summary
+ * of the node they were requested for, such as component semantics or clauses, so that interior nodes of
+ * long formulas do not each hold a copy of the union of their arguments' variables.
+ */
+public class NodeSummary {
+
+    private final Node node;
+
+    private volatile Map<Class<? extends Variable>, Set<Variable>> variables;
+
+    private final int size;
+
+    private final int depth;
+
+    private NodeSummary(Node node, int size, int depth) {
+        this.node = node;
+        this.size = size;
+        this.depth = depth;
+    }
+
+    private Map<Class<? extends Variable>, Set<Variable>> variables() {
+        Map<Class<? extends Variable>, Set<Variable>> result = variables;
+        if (result == null) {
+            result = collect(node);
+            variables = result;
+        }
+        return result;
+    }
+
+    boolean hasCachedVariables() {
+        return variables != null;
+    }
+
+    public Set<Variable> getVariables() {
+        return getVariables(Variable.class);
+    }
+
+    /**
+     * @return variables that are instances of the given class
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Variable> Set<T> getVariables(Class<T> kind) {
+        Map<Class<? extends Variable>, Set<Variable>> variables = variables();
+        Set<Variable> exact = variables.get(kind);
+        Set<Variable> result = null;
+        for (Map.Entry<Class<? extends Variable>, Set<Variable>> entry : variables.entrySet()) {
+            if (entry.getValue() == exact || !kind.isAssignableFrom(entry.getKey())) {
+                continue;
+            }
+            if (result == null) {
+                result = exact == null ? new HashSet<>() : new HashSet<>(exact);
+            }
+            result.addAll(entry.getValue());
+        }
+        if (result != null) {
+            return (Set<T>) Collections.unmodifiableSet(result);
+        }
+        return exact == null ? Collections.emptySet() : (Set<T>) exact;
+    }
+
+    public boolean hasVariables(Class<? extends Variable> kind) {
+        for (Class<? extends Variable> key : variables().keySet()) {
+            if (kind.isAssignableFrom(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of nodes in the tree, shared subterms are counted for each occurrence
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public static NodeSummary of(Node node) {
+        if (node.getCachedSummary() != null) {
+            return node.getCachedSummary();
+        }
+        // iterative, since formulas such as disjunctions of encoding clauses can be very deep
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            Node current = pending.peek();
+            if (current.getCachedSummary() != null) {
+                pending.pop();
+                continue;
+            }
+            if (current instanceof Instantiation) {
+                pending.pop();
+                current.setCachedSummary(of(((Instantiation) current).expand()));
+                continue;
+            }
+            List<Node> args = current instanceof Application ? ((Application) current).getArgs()
+                                                             : Collections.emptyList();
+            boolean ready = true;
+            for (Node arg : args) {
+                if (arg.getCachedSummary() == null) {
+                    pending.push(arg);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                pending.pop();
+                long size = 1;
+                int depth = 0;
+                for (Node arg : args) {
+                    size += arg.getCachedSummary().size;
+                    depth = Math.max(depth, arg.getCachedSummary().depth);
+                }
+                current.setCachedSummary(new NodeSummary(current, (int) Math.min(size, Integer.MAX_VALUE), depth + 1));
+            }
+        }
+        return node.getCachedSummary();
+    }
+
+    /**
+     * Reuses variables already collected for subterms
+     */
+    private static Map<Class<? extends Variable>, Set<Variable>> collect(Node root) {
+        if (root instanceof Variable) {
+            Variable variable = (Variable) root;
+            return Collections.singletonMap(variable.getClass(), Collections.singleton(variable));
+        }
+        Map<Class<? extends Variable>, Set<Variable>> result = new HashMap<>();
+        Set<Node> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node current = pending.pop();
+            if (!visited.add(current)) {
+                continue;
+            }
+            NodeSummary summary = current.getCachedSummary();
+            if (current != root && summary != null && summary.variables != null) {
+                for (Map.Entry<Class<? extends Variable>, Set<Variable>> entry : summary.variables.entrySet()) {
+                    result.computeIfAbsent(entry.getKey(), k -> new HashSet<>()).addAll(entry.getValue());
+                }
+            } else if (current instanceof Instantiation) {
+                pending.push(((Instantiation) current).expand());
+            } else if (current instanceof Variable) {
+                result.computeIfAbsent(((Variable) current).getClass(), k -> new HashSet<>()).add((Variable) current);
+            } else if (current instanceof Application) {
+                pending.addAll(((Application) current).getArgs());
+            }
+        }
+        if (result.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        for (Map.Entry<Class<? extends Variable>, Set<Variable>> entry : result.entrySet()) {
+            entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+}
@@ -55,7 +55,7 @@ public class Parameter extends Variable {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(name).
                 append(type).
@@ -54,6 +54,9 @@ public class Program {
                                                                                         e -> e.getValue().getSemantics()));
             semantics = Traverse.substitute(root.getSemantics(), map);
         }
+        if (parameterValuation.isEmpty() || !semantics.getSummary().hasVariables(Parameter.class)) {
+            return semantics;
+        }
         return Traverse.substitute(semantics, parameterValuation);
     }
 
@@ -102,18 +105,24 @@ public class Program {
             return true;
 
         Program rhs = (Program) obj;
-        return new EqualsBuilder().
-                append(root, rhs.children).
-                append(root, rhs.children).
+        return hashCode() == rhs.hashCode() && new EqualsBuilder().
+                append(root, rhs.root).
+                append(children, rhs.children).
                 isEquals();
     }
 
+    // programs are immutable, hash is computed once
+    private int hash = 0;
+
     @Override
     public int hashCode() {
-        return new HashCodeBuilder(17, 31).
-                append(root).
-                append(children).
-                toHashCode();
+        if (hash == 0) {
+            hash = new HashCodeBuilder(17, 31).
+                    append(root).
+                    append(children).
+                    toHashCode();
+        }
+        return hash;
     }
 
     @Override
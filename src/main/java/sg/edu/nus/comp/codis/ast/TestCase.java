@@ -3,26 +3,66 @@ package sg.edu.nus.comp.codis.ast;
 import sg.edu.nus.comp.codis.ast.theory.Equal;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Created by Sergey Mechtaev on 7/4/2016.
  *
- * Represent constraints over inputs and output. Defines physical equality.
+ * Represent constraints over inputs and output. Defines physical equality, except for {@link ConcreteTestCase}.
  */
 public abstract class TestCase {
 
+    /**
+     * CONCRETE tests assign constants to inputs and output and can be checked by evaluation,
+     * PARTIAL tests are assignments to arbitrary terms, CUSTOM tests are other constraints.
+     */
+    public enum Kind { CONCRETE, PARTIAL, CUSTOM }
+
     public abstract List<Node> getConstraints(Variable output);
 
     public abstract Type getOutputType();
 
+    public Kind getKind() {
+        return Kind.CUSTOM;
+    }
+
+    /**
+     * Only for CONCRETE tests
+     */
+    public Map<ProgramVariable, Constant> getInputValues() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Only for CONCRETE tests
+     */
+    public Constant getOutputValue() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return ConcreteTestCase if all values are constants
+     */
     public static TestCase ofAssignment(Map<ProgramVariable, ? extends Node> assignment, Node outputValue) {
         ArrayList<Node> inputClauses = new ArrayList<>();
+        Map<ProgramVariable, Constant> inputValues = new HashMap<>();
         for (Map.Entry<ProgramVariable, ? extends Node> entry : assignment.entrySet()) {
             inputClauses.add(new Equal(entry.getKey(), entry.getValue()));
+            if (entry.getValue() instanceof Constant) {
+                inputValues.put(entry.getKey(), (Constant) entry.getValue());
+            }
+        }
+        if (inputValues.size() == assignment.size() && outputValue instanceof Constant) {
+            return new ConcreteTestCase(inputValues, (Constant) outputValue);
         }
         return new TestCase() {
+            @Override
+            public Kind getKind() {
+                return Kind.PARTIAL;
+            }
+
             @Override
             public List<Node> getConstraints(Variable output) {
                 ArrayList<Node> clauses = new ArrayList<>();
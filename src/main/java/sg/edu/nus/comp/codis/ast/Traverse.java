@@ -4,16 +4,92 @@ import sg.edu.nus.comp.codis.ast.theory.*;
 
 import java.util.*;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * Created by Sergey Mechtaev on 7/4/2016.
  */
 public class Traverse {
 
+    /**
+     * Applies the function bottom-up. Nodes whose arguments are unchanged are passed to the function as is,
+     * and subterms shared by reference are transformed once.
+     */
     public static Node transform(Node node, Function<Node, Node> function) {
-        TransformationVisitor visitor = new TransformationVisitor(function);
-        node.accept(visitor);
-        return visitor.getTransformedNode();
+        Map<Node, Node> transformed = new IdentityHashMap<>();
+        // nodes whose arguments are already on the stack of results
+        Set<Node> expanded = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Node> pending = new ArrayDeque<>();
+        Deque<Node> results = new ArrayDeque<>();
+        pending.push(expand(node));
+        while (!pending.isEmpty()) {
+            Node current = pending.pop();
+            Node result = transformed.get(current);
+            if (result != null) {
+                results.push(result);
+                continue;
+            }
+            if (!(current instanceof Application)) {
+                result = function.apply(current);
+            } else if (!expanded.contains(current)) {
+                expanded.add(current);
+                pending.push(current);
+                List<Node> args = ((Application) current).getArgs();
+                for (int i = args.size() - 1; i >= 0; i--) {
+                    pending.push(expand(args.get(i)));
+                }
+                continue;
+            } else {
+                List<Node> args = ((Application) current).getArgs();
+                Node[] newArgs = new Node[args.size()];
+                boolean changed = false;
+                for (int i = newArgs.length - 1; i >= 0; i--) {
+                    newArgs[i] = results.pop();
+                    changed |= newArgs[i] != args.get(i);
+                }
+                result = function.apply(changed ? ((Application) current).withArgs(Arrays.asList(newArgs)) : current);
+            }
+            transformed.put(current, result);
+            results.push(result);
+        }
+        return results.pop();
+    }
+
+    /**
+     * Pre-order search that stops at the first match. Subterms shared by reference are visited once per occurrence.
+     */
+    public static Optional<Node> findFirst(Node node, Predicate<Node> predicate) {
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(node);
+        while (!pending.isEmpty()) {
+            Node current = expand(pending.pop());
+            if (predicate.test(current)) {
+                return Optional.of(current);
+            }
+            if (current instanceof BinaryOp) {
+                pending.push(((BinaryOp) current).getRight());
+                pending.push(((BinaryOp) current).getLeft());
+            } else if (current instanceof UnaryOp) {
+                pending.push(((UnaryOp) current).getArg());
+            } else if (current instanceof ITE) {
+                pending.push(((ITE) current).getElseBranch());
+                pending.push(((ITE) current).getThenBranch());
+                pending.push(((ITE) current).getCondition());
+            } else if (current instanceof Application) {
+                List<Node> args = ((Application) current).getArgs();
+                for (int i = args.size() - 1; i >= 0; i--) {
+                    pending.push(args.get(i));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private static Node expand(Node node) {
+        if (node instanceof Instantiation) {
+            return ((Instantiation) node).expand();
+        }
+        return node;
     }
 
     public static Node substitute(Node node,
@@ -28,7 +104,11 @@ public class Traverse {
     }
 
 
+    @SuppressWarnings("unchecked")
     public static <T> Set<T> collectByType(Node node, Class<T> type) {
+        if (Variable.class.isAssignableFrom(type)) {
+            return new HashSet<>((Set<T>) node.getSummary().getVariables((Class<? extends Variable>) type));
+        }
         CollectVisitor visitor = new CollectVisitor(type);
         node.accept(visitor);
         return visitor.getCollected();
@@ -350,406 +430,4 @@ public class Traverse {
         }
     }
 
-    private static class TransformationVisitor implements BottomUpVisitor {
-
-        private Stack<Node> nodes;
-        private Function<Node, Node> function;
-
-        TransformationVisitor(Function<Node, Node> function) {
-            this.function = function;
-            nodes = new Stack<>();
-        }
-
-        Node getTransformedNode() {
-            assert nodes.size() != 0;
-            return nodes.peek();
-        }
-
-        @Override
-        public void visit(ProgramVariable programVariable) {
-            nodes.push(function.apply(programVariable));
-        }
-
-        @Override
-        public void visit(Location location) {
-            nodes.push(function.apply(location));
-        }
-
-        @Override
-        public void visit(UIFApplication UIFApplication) {
-            int argsNum = UIFApplication.getArgs().size();
-            ArrayList<Node> args = new ArrayList<>();
-            for (int i=0; i< argsNum; i++) {
-                args.add(nodes.pop());
-            }
-            Collections.reverse(args);
-            nodes.push(function.apply(new UIFApplication(UIFApplication.getUIF(), args)));
-        }
-
-        @Override
-        public void visit(Equal equal) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new Equal(left, right)));
-        }
-
-        @Override
-        public void visit(Add add) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new Add(left, right)));
-        }
-
-        @Override
-        public void visit(Sub sub) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new Sub(left, right)));
-        }
-
-        @Override
-        public void visit(Mult mult) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new Mult(left, right)));
-        }
-
-        @Override
-        public void visit(Div div) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new Div(left, right)));
-        }
-
-        @Override
-        public void visit(And and) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new And(left, right)));
-        }
-
-        @Override
-        public void visit(Or or) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new Or(left, right)));
-        }
-
-        @Override
-        public void visit(Iff iff) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new Iff(left, right)));
-        }
-
-        @Override
-        public void visit(Impl impl) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new Impl(left, right)));
-        }
-
-        @Override
-        public void visit(Greater greater) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new Greater(left, right)));
-        }
-
-        @Override
-        public void visit(Less less) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new Less(left, right)));
-        }
-
-        @Override
-        public void visit(GreaterOrEqual greaterOrEqual) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new GreaterOrEqual(left, right)));
-        }
-
-        @Override
-        public void visit(LessOrEqual lessOrEqual) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new LessOrEqual(left, right)));
-        }
-
-        @Override
-        public void visit(Minus minus) {
-            Node arg = nodes.pop();
-            nodes.push(function.apply(new Minus(arg)));
-        }
-
-        @Override
-        public void visit(Not not) {
-            Node arg = nodes.pop();
-            nodes.push(function.apply(new Not(arg)));
-        }
-
-        @Override
-        public void visit(IntConst intConst) {
-            nodes.push(function.apply(intConst));
-        }
-
-        @Override
-        public void visit(BoolConst boolConst) {
-            nodes.push(function.apply(boolConst));
-        }
-
-        @Override
-        public void visit(ComponentInput componentInput) {
-            nodes.push(function.apply(componentInput));
-        }
-
-        @Override
-        public void visit(ComponentOutput componentOutput) {
-            nodes.push(function.apply(componentOutput));
-        }
-
-        @Override
-        public void visit(TestInstance testInstance) {
-            nodes.push(function.apply(testInstance));
-        }
-
-        @Override
-        public void visit(Parameter parameter) {
-            nodes.push(function.apply(parameter));
-        }
-
-        @Override
-        public void visit(Hole hole) {
-            nodes.push(function.apply(hole));
-        }
-
-        @Override
-        public void visit(ITE ite) {
-            Node elseBranch = nodes.pop();
-            Node thenBranch = nodes.pop();
-            Node condition = nodes.pop();
-            nodes.push(function.apply(new ITE(condition, thenBranch, elseBranch)));
-        }
-
-        @Override
-        public void visit(Selector selector) {
-            nodes.push(function.apply(selector));
-        }
-
-        @Override
-        public void visit(BVConst bvConst) {
-            nodes.push(function.apply(bvConst));
-        }
-
-        @Override
-        public void visit(BVAdd bvAdd) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVAdd(left, right)));
-        }
-
-        @Override
-        public void visit(BVAnd bvAnd) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVAnd(left, right)));
-        }
-
-        @Override
-        public void visit(BVMult bvMult) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new Mult(left, right)));
-
-        }
-
-        @Override
-        public void visit(BVNeg bvNeg) {
-            Node arg = nodes.pop();
-            nodes.push(function.apply(new BVNeg(arg)));
-        }
-
-        @Override
-        public void visit(BVNot bvNot) {
-            Node arg = nodes.pop();
-            nodes.push(function.apply(new BVNot(arg)));
-        }
-
-        @Override
-        public void visit(BVOr bvOr) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVOr(left, right)));
-        }
-
-        @Override
-        public void visit(BVShiftLeft bvShiftLeft) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVShiftLeft(left, right)));
-
-        }
-
-        @Override
-        public void visit(BVSignedDiv bvSignedDiv) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVSignedDiv(left, right)));
-        }
-
-        @Override
-        public void visit(BVSignedGreater bvSignedGreater) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVSignedGreater(left, right)));
-        }
-
-        @Override
-        public void visit(BVSignedGreaterOrEqual bvSignedGreaterOrEqual) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVSignedGreaterOrEqual(left, right)));
-        }
-
-        @Override
-        public void visit(BVSignedLess bvSignedLess) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVShiftLeft(left, right)));
-        }
-
-        @Override
-        public void visit(BVSignedLessOrEqual bvSignedLessOrEqual) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVSignedLessOrEqual(left, right)));
-        }
-
-        @Override
-        public void visit(BVSignedModulo bvSignedModulo) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVSignedModulo(left, right)));
-        }
-
-        @Override
-        public void visit(BVSignedRemainder bvSignedRemainder) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVSignedRemainder(left, right)));
-        }
-
-        @Override
-        public void visit(BVSignedShiftRight bvSignedShiftRight) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVSignedShiftRight(left, right)));
-        }
-
-        @Override
-        public void visit(BVSub bvSub) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVSub(left, right)));
-        }
-
-        @Override
-        public void visit(BVUnsignedDiv bvUnsignedDiv) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVUnsignedDiv(left, right)));
-        }
-
-        @Override
-        public void visit(BVUnsignedGreater bvUnsignedGreater) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVUnsignedGreater(left, right)));
-        }
-
-        @Override
-        public void visit(BVUnsignedGreaterOrEqual bvUnsignedGreaterOrEqual) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVUnsignedGreaterOrEqual(left, right)));
-        }
-
-        @Override
-        public void visit(BVUnsignedLess bvUnsignedLess) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVUnsignedLess(left, right)));
-        }
-
-        @Override
-        public void visit(BVUnsignedLessOrEqual bvUnsignedLessOrEqual) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVUnsignedLessOrEqual(left, right)));
-        }
-
-        @Override
-        public void visit(BVUnsignedRemainder bvUnsignedRemainder) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVUnsignedRemainder(left, right)));
-        }
-
-        @Override
-        public void visit(BVUnsignedShiftRight bvUnsignedShiftRight) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVUnsignedShiftRight(left, right)));
-        }
-
-        @Override
-        public void visit(BranchOutput branchOutput) {
-            nodes.push(function.apply(branchOutput));
-        }
-
-        @Override
-        public void visit(BVNand bvNand) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVNand(left, right)));
-        }
-
-        @Override
-        public void visit(BVXor bvXor) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVXor(left, right)));
-        }
-
-        @Override
-        public void visit(BVNor bvNor) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVNor(left, right)));
-        }
-
-        @Override
-        public void visit(BVXnor bvXnor) {
-            Node right = nodes.pop();
-            Node left = nodes.pop();
-            nodes.push(function.apply(new BVXnor(left, right)));
-        }
-
-        @Override
-        public void visit(ProgramOutput programOutput) {
-            nodes.push(function.apply(programOutput));
-        }
-
-        @Override
-        public void visit(Dummy dummy) {
-            nodes.push(function.apply(dummy));
-        }
-
-        @Override
-        public void visit(Indexed indexed) {
-            nodes.push(function.apply(indexed));
-        }
-
-    }
 }
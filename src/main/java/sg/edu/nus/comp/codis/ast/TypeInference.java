@@ -2,22 +2,68 @@ package sg.edu.nus.comp.codis.ast;
 
 import sg.edu.nus.comp.codis.ast.theory.*;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Optional;
-import java.util.Stack;
+import java.util.*;
 
 /**
  * Created by Sergey Mechtaev on 7/4/2016.
  */
 public class TypeInference {
 
+    private static final Set<Class<? extends Node>> booleanOperators = new HashSet<>(Arrays.asList(
+            Equal.class, And.class, Or.class, Iff.class, Impl.class, Not.class,
+            Greater.class, GreaterOrEqual.class, Less.class, LessOrEqual.class,
+            BVSignedGreater.class, BVSignedGreaterOrEqual.class, BVSignedLess.class, BVSignedLessOrEqual.class,
+            BVUnsignedGreater.class, BVUnsignedGreaterOrEqual.class, BVUnsignedLess.class, BVUnsignedLessOrEqual.class));
+
+    private static final Set<Class<? extends Node>> integerOperators = new HashSet<>(Arrays.asList(
+            Add.class, Sub.class, Mult.class, Div.class, Minus.class));
+
+    /**
+     * Type of a well-typed node. It is inferred from the operator and, if needed, from the first operand,
+     * and cached in the node. Use checkType to validate the node.
+     */
     public static Type typeOf(Node node) {
-        try {
-            return checkType(node); //FIXME: get type without type checking
-        } catch (TypeInferenceException e) {
-            throw new RuntimeException("failed to get type");
+        Type type = node.getCachedType();
+        if (type == null) {
+            type = infer(node);
+            node.setCachedType(type);
+        }
+        return type;
+    }
+
+    private static Type infer(Node node) {
+        if (node instanceof Variable) {
+            return ((Variable) node).getType();
+        }
+        if (node instanceof IntConst) {
+            return IntType.TYPE;
+        }
+        if (node instanceof BoolConst) {
+            return BoolType.TYPE;
+        }
+        if (node instanceof BVConst) {
+            return ((BVConst) node).getType();
+        }
+        if (node instanceof Instantiation) {
+            return typeOf(((Instantiation) node).getTemplate());
+        }
+        if (node instanceof UIFApplication) {
+            return ((UIFApplication) node).getUIF().getType();
+        }
+        if (node instanceof ITE) {
+            return typeOf(((ITE) node).getThenBranch());
+        }
+        if (booleanOperators.contains(node.getClass())) {
+            return BoolType.TYPE;
+        }
+        if (integerOperators.contains(node.getClass())) {
+            return IntType.TYPE;
+        }
+        if (node instanceof Application && !((Application) node).getArgs().isEmpty()) {
+            // bit-vector operators preserve the type of operands
+            return typeOf(((Application) node).getArgs().get(0));
         }
+        throw new RuntimeException("failed to get type");
     }
 
     public static Type typeOf(Component component) {
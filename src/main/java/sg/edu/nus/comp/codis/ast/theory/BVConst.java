@@ -59,7 +59,7 @@ public class BVConst extends Constant {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(type).
                 append(value).
@@ -8,6 +8,7 @@ import sg.edu.nus.comp.codis.ast.Node;
 import sg.edu.nus.comp.codis.ast.TopDownVisitor;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Sergey Mechtaev on 7/4/2016.
@@ -51,6 +52,11 @@ public class BVNor extends BinaryOp {
         return result;
     }
 
+    @Override
+    public BVNor withArgs(List<Node> args) {
+        return new BVNor(args.get(0), args.get(1));
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (!(obj instanceof BVNor))
@@ -66,7 +72,7 @@ public class BVNor extends BinaryOp {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(left).
                 append(right).
@@ -7,6 +7,7 @@ import sg.edu.nus.comp.codis.ast.Node;
 import sg.edu.nus.comp.codis.ast.TopDownVisitor;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Sergey Mechtaev on 30/4/2016.
@@ -46,6 +47,11 @@ public class BVNot extends UnaryOp {
         return "!" + arg.toString();
     }
 
+    @Override
+    public BVNot withArgs(List<Node> args) {
+        return new BVNot(args.get(0));
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (!(obj instanceof BVNot))
@@ -60,7 +66,7 @@ public class BVNot extends UnaryOp {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(arg).
                 toHashCode();
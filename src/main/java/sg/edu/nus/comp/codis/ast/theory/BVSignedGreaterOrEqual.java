@@ -7,6 +7,7 @@ import sg.edu.nus.comp.codis.ast.Node;
 import sg.edu.nus.comp.codis.ast.TopDownVisitor;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Sergey Mechtaev on 30/4/2016.
@@ -52,6 +53,11 @@ public class BVSignedGreaterOrEqual extends BinaryOp {
     }
 
 
+    @Override
+    public BVSignedGreaterOrEqual withArgs(List<Node> args) {
+        return new BVSignedGreaterOrEqual(args.get(0), args.get(1));
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (!(obj instanceof BVSignedGreaterOrEqual))
@@ -67,7 +73,7 @@ public class BVSignedGreaterOrEqual extends BinaryOp {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(left).
                 append(right).
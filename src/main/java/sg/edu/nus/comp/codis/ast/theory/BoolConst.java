@@ -52,7 +52,7 @@ public class BoolConst extends Constant {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(value).
                 toHashCode();
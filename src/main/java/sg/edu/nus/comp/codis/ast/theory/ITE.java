@@ -53,6 +53,11 @@ public class ITE extends Application {
         elseBranch.accept(visitor);
     }
 
+    @Override
+    public ITE withArgs(List<Node> args) {
+        return new ITE(args.get(0), args.get(1), args.get(2));
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (!(obj instanceof ITE))
@@ -69,7 +74,7 @@ public class ITE extends Application {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(condition).
                 append(thenBranch).
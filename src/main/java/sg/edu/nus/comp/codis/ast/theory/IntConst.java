@@ -48,7 +48,7 @@ public class IntConst extends Constant {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(value).
                 toHashCode();
@@ -8,6 +8,7 @@ import sg.edu.nus.comp.codis.ast.Node;
 import sg.edu.nus.comp.codis.ast.TopDownVisitor;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Sergey Mechtaev on 7/4/2016.
@@ -47,6 +48,11 @@ public class Minus extends UnaryOp {
         return "-" + arg.toString();
     }
 
+    @Override
+    public Minus withArgs(List<Node> args) {
+        return new Minus(args.get(0));
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (!(obj instanceof Minus))
@@ -61,7 +67,7 @@ public class Minus extends UnaryOp {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(arg).
                 toHashCode();
@@ -9,6 +9,7 @@ import sg.edu.nus.comp.codis.ast.Node;
 import sg.edu.nus.comp.codis.ast.TopDownVisitor;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Sergey Mechtaev on 7/4/2016.
@@ -48,6 +49,11 @@ public class Not extends UnaryOp {
         return "!" + arg.toString();
     }
 
+    @Override
+    public Not withArgs(List<Node> args) {
+        return new Not(args.get(0));
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (!(obj instanceof Not))
@@ -62,7 +68,7 @@ public class Not extends UnaryOp {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(arg).
                 toHashCode();
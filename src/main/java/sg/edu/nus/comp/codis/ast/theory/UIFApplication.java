@@ -8,6 +8,7 @@ import sg.edu.nus.comp.codis.ast.Node;
 import sg.edu.nus.comp.codis.ast.TopDownVisitor;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by Sergey Mechtaev on 7/4/2016.
@@ -46,6 +47,11 @@ public class UIFApplication extends Application {
         return args;
     }
 
+    @Override
+    public UIFApplication withArgs(List<Node> args) {
+        return new UIFApplication(UIF, new ArrayList<>(args));
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (!(obj instanceof UIFApplication))
@@ -61,7 +67,7 @@ public class UIFApplication extends Application {
     }
 
     @Override
-    public int hashCode() {
+    protected int computeHashCode() {
         return new HashCodeBuilder(17, 31).
                 append(UIF).
                 append(args).
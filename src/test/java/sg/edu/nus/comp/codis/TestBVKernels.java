@@ -0,0 +1,57 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestBVKernels {
+
+    private long[] column(Random random, int size, int width) {
+        long[] column = new long[size];
+        for (int i = 0; i < size; i++) {
+            // small values exercise shifts within the width
+            column[i] = (i % 3 == 0 ? random.nextInt(80) : random.nextLong()) & Arithmetic.mask(width);
+        }
+        return column;
+    }
+
+    @Test
+    public void testAgainstInterpreter() {
+        Random random = new Random(0);
+        int size = 1000;
+        for (int width : new int[] { 8, 16, 32, 64 }) {
+            long[] a = column(random, size, width);
+            long[] b = column(random, size, width);
+            long[] out = new long[size];
+            boolean[] flags = new boolean[size];
+
+            BVKernels.add(a, b, out, width);
+            for (int i = 0; i < size; i++) {
+                assertEquals((a[i] + b[i]) & Arithmetic.mask(width), out[i]);
+            }
+            BVKernels.shl(a, b, out, width);
+            for (int i = 0; i < size; i++) {
+                assertEquals(Arithmetic.shl(a[i], b[i], width), out[i]);
+            }
+            BVKernels.lshr(a, b, out, width);
+            for (int i = 0; i < size; i++) {
+                assertEquals(Arithmetic.lshr(a[i], b[i], width), out[i]);
+            }
+            BVKernels.ashr(a, b, out, width);
+            for (int i = 0; i < size; i++) {
+                assertEquals(Arithmetic.ashr(a[i], b[i], width), out[i]);
+            }
+            BVKernels.ult(a, b, flags);
+            for (int i = 0; i < size; i++) {
+                assertEquals(Long.compareUnsigned(a[i], b[i]) < 0, flags[i]);
+            }
+            BVKernels.sle(a, b, flags, width);
+            for (int i = 0; i < size; i++) {
+                assertEquals(Arithmetic.signed(a[i], width) <= Arithmetic.signed(b[i], width), flags[i]);
+            }
+        }
+    }
+
+}
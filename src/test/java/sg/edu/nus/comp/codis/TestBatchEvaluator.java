@@ -0,0 +1,90 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestBatchEvaluator {
+
+    private final ProgramVariable x = ProgramVariable.mkBV("x", 8);
+
+    private TestCase test(long input, long output) {
+        Map<ProgramVariable, Node> assignment = new HashMap<>();
+        assignment.put(x, BVConst.ofLong(input, 8));
+        return TestCase.ofAssignment(assignment, BVConst.ofLong(output, 8));
+    }
+
+    private Program increment() {
+        Hole h1 = new Hole("h1", new BVType(8), Node.class);
+        Hole h2 = new Hole("h2", new BVType(8), Node.class);
+        Map<Hole, Program> args = new HashMap<>();
+        args.put(h1, Program.leaf(new Component(x)));
+        args.put(h2, Program.leaf(new Component(BVConst.ofLong(1, 8))));
+        return Program.app(new Component(new BVAdd(h1, h2)), args);
+    }
+
+    @Test
+    public void testColumns() {
+        TestStore store = new TestStore(Arrays.asList(test(1, 2), test(255, 0), test(-3, 7)));
+        assertArrayEquals(new long[] { 1, 255, 253 }, (long[]) store.getColumn(x));
+        assertArrayEquals(new long[] { 2, 0, 7 }, (long[]) store.getOutputs());
+        assertTrue(store.getSymbolic().isEmpty());
+    }
+
+    @Test
+    public void testFailing() {
+        TestCase symbolic = new TestCase() {
+            @Override
+            public List<Node> getConstraints(Variable result) {
+                List<Node> clauses = new ArrayList<>();
+                clauses.add(new Equal(x, BVConst.ofLong(9, 8)));
+                clauses.add(new BVUnsignedLess(result, BVConst.ofLong(5, 8)));
+                return clauses;
+            }
+
+            @Override
+            public Type getOutputType() {
+                return new BVType(8);
+            }
+        };
+        List<TestCase> tests = Arrays.asList(test(1, 2), test(255, 0), test(3, 3), symbolic, test(7, 8));
+        TestStore store = new TestStore(tests);
+        assertEquals(3, store.getSymbolic().nextSetBit(0));
+
+        // only ground tests, the solver is never used
+        BatchEvaluator evaluator = new BatchEvaluator(store, new Tester(null));
+        BitSet failing = evaluator.getFailing(increment(), new HashMap<>());
+        BitSet expected = new BitSet();
+        expected.set(2);
+        expected.set(3);
+        assertEquals(expected, failing);
+    }
+
+    @Test
+    public void testSubprogramMemoization() {
+        BatchEvaluator evaluator = new BatchEvaluator(new TestStore(Arrays.asList(test(1, 2), test(3, 6))), new Tester(null));
+        Program program = increment();
+        assertEquals(1, evaluator.getFailing(program, new HashMap<>()).cardinality());
+        assertEquals(3, evaluator.getMemoizedCount());
+
+        Component one = null;
+        for (Component leaf : program.getLeaves()) {
+            if (leaf.getSemantics() instanceof BVConst) {
+                one = leaf;
+            }
+        }
+        Map<Component, Program> mapping = new HashMap<>();
+        mapping.put(one, Program.leaf(new Component(x)));
+        Program doubled = program.substitute(mapping);
+        assertTrue(evaluator.getFailing(doubled, new HashMap<>()).isEmpty());
+        // only the new leaf and the root are evaluated
+        assertEquals(5, evaluator.getMemoizedCount());
+        assertTrue(evaluator.getFailing(program, new HashMap<>()).get(1));
+        assertEquals(5, evaluator.getMemoizedCount());
+    }
+
+}
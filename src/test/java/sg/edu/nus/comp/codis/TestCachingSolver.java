@@ -0,0 +1,117 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestCachingSolver {
+
+    /**
+     * Assigns 1 to all variables if there are no assumptions, otherwise the first assumption is the core
+     */
+    private static class CountingSolver implements Solver {
+        private int queries = 0;
+
+        @Override
+        public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+            queries++;
+            if (!assumptions.isEmpty()) {
+                return Either.right(Collections.singletonList(assumptions.get(0)));
+            }
+            Map<Variable, Constant> model = new HashMap<>();
+            for (Node clause : clauses) {
+                for (Variable variable : Traverse.collectByType(clause, Variable.class)) {
+                    model.put(variable, IntConst.of(1));
+                }
+            }
+            return Either.left(model);
+        }
+
+        @Override
+        public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+            return Optional.of(getModelOrCore(clauses, new ArrayList<>()).left().value());
+        }
+    }
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final ProgramVariable y = ProgramVariable.mkInt("y");
+    private final ProgramVariable z = ProgramVariable.mkInt("z");
+
+    @Test
+    public void testAlphaEquivalentQueries() {
+        CountingSolver backend = new CountingSolver();
+        CachingSolver solver = new CachingSolver(backend);
+
+        List<Node> first = new ArrayList<>();
+        first.add(new Equal(x, IntConst.of(1)));
+        first.add(new Greater(x, IntConst.of(0)));
+        List<Node> second = new ArrayList<>();
+        second.add(new Greater(y, IntConst.of(0)));
+        second.add(new Equal(y, IntConst.of(1)));
+        second.add(new Equal(y, IntConst.of(1)));
+
+        assertEquals(IntConst.of(1), solver.getModel(first).get().get(x));
+        Map<Variable, Constant> model = solver.getModel(second).get();
+        assertEquals(IntConst.of(1), model.get(y));
+        assertFalse(model.containsKey(x));
+        assertEquals(1, backend.queries);
+        assertEquals(0.5, solver.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testDifferentTheoriesDoNotCollide() {
+        CountingSolver backend = new CountingSolver();
+        CachingSolver solver = new CachingSolver(backend);
+        ProgramVariable b = ProgramVariable.mkBV("b", 8);
+
+        solver.getModel(Collections.singletonList(new BVSignedLess(b, BVConst.ofLong(1, 8))));
+        solver.getModel(Collections.singletonList(new BVUnsignedLess(b, BVConst.ofLong(1, 8))));
+        assertEquals(2, backend.queries);
+    }
+
+    @Test
+    public void testCoreIsRemapped() {
+        CountingSolver backend = new CountingSolver();
+        CachingSolver solver = new CachingSolver(backend);
+
+        List<Node> firstClauses = Collections.singletonList(new Equal(x, y));
+        List<Node> firstAssumptions = Arrays.asList(new Equal(x, IntConst.of(1)), new Equal(y, IntConst.of(2)));
+        List<Node> secondClauses = Collections.singletonList(new Equal(z, y));
+        List<Node> secondAssumptions = Arrays.asList(new Equal(z, IntConst.of(1)), new Equal(y, IntConst.of(2)));
+
+        solver.getModelOrCore(firstClauses, firstAssumptions);
+        Either<Map<Variable, Constant>, List<Node>> result = solver.getModelOrCore(secondClauses, secondAssumptions);
+        assertTrue(result.isRight());
+        assertEquals(Collections.singletonList(secondAssumptions.get(0)), result.right().value());
+        assertEquals(1, backend.queries);
+    }
+
+    @Test
+    public void testPersistence() throws IOException {
+        Path file = Files.createTempFile("solver-cache", ".txt");
+        Files.delete(file);
+        try {
+            CachingSolver solver = new CachingSolver(new CountingSolver(), 100, file);
+            solver.getModel(Collections.singletonList(new Equal(x, IntConst.of(1))));
+            solver.getModelOrCore(Collections.singletonList(new Equal(x, y)),
+                                  Collections.singletonList(new Equal(y, IntConst.of(2))));
+            solver.save();
+
+            CountingSolver backend = new CountingSolver();
+            CachingSolver reloaded = new CachingSolver(backend, 100, file);
+            assertEquals(2, reloaded.size());
+            assertEquals(IntConst.of(1), reloaded.getModel(Collections.singletonList(new Equal(z, IntConst.of(1)))).get().get(z));
+            assertEquals(0, backend.queries);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
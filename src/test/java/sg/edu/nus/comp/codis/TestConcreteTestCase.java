@@ -0,0 +1,68 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestConcreteTestCase {
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final ProgramVariable b = ProgramVariable.mkBool("b");
+    private final ProgramVariable v = ProgramVariable.mkBV("v", 8);
+
+    private TestCase test(int xValue, boolean bValue, long vValue, int output) {
+        Map<ProgramVariable, Node> assignment = new HashMap<>();
+        assignment.put(x, IntConst.of(xValue));
+        assignment.put(b, BoolConst.of(bValue));
+        assignment.put(v, BVConst.ofLong(vValue, 8));
+        return TestCase.ofAssignment(assignment, IntConst.of(output));
+    }
+
+    @Test
+    public void testEquality() {
+        TestCase test = test(1, true, 200, 3);
+        assertTrue(test instanceof ConcreteTestCase);
+        assertEquals(test, test(1, true, 200, 3));
+        assertEquals(test.hashCode(), test(1, true, 200, 3).hashCode());
+        assertNotEquals(test, test(1, false, 200, 3));
+        assertNotEquals(test, test(1, true, 200, 4));
+        assertEquals(new TestInstance(x, test), new TestInstance(x, test(1, true, 200, 3)));
+
+        Set<TestCase> tests = new HashSet<>();
+        tests.add(test);
+        tests.add(test(1, true, 200, 3));
+        tests.add(test(2, true, 200, 3));
+        assertEquals(2, tests.size());
+    }
+
+    @Test
+    public void testValues() {
+        TestCase test = test(-5, true, 255, 3);
+        assertEquals(IntConst.of(-5), test.getInputValues().get(x));
+        assertEquals(BoolConst.TRUE, test.getInputValues().get(b));
+        assertEquals(BVConst.ofLong(255, 8), test.getInputValues().get(v));
+        assertEquals(IntConst.of(3), test.getOutputValue());
+        assertEquals(IntType.TYPE, test.getOutputType());
+
+        ProgramOutput output = new ProgramOutput(IntType.TYPE);
+        List<Node> clauses = test.getConstraints(output);
+        assertEquals(4, clauses.size());
+        assertTrue(clauses.contains(new Equal(output, IntConst.of(3))));
+        clauses.add(BoolConst.FALSE);
+        assertEquals(4, test.getConstraints(output).size());
+    }
+
+    @Test
+    public void testPartial() {
+        Map<ProgramVariable, Node> assignment = new HashMap<>();
+        assignment.put(x, new Add(IntConst.of(1), IntConst.of(2)));
+        TestCase test = TestCase.ofAssignment(assignment, IntConst.of(3));
+        assertFalse(test instanceof ConcreteTestCase);
+        assertNotEquals(test, TestCase.ofAssignment(assignment, IntConst.of(3)));
+    }
+
+}
@@ -0,0 +1,69 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestInterpreter {
+
+    private Constant eval(Node node) {
+        return Interpreter.eval(node, new HashMap<>()).get();
+    }
+
+    private BVConst bv(long value) {
+        return BVConst.ofLong(value, 8);
+    }
+
+    @Test
+    public void testInt() {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        Map<ProgramVariable, Node> assignment = new HashMap<>();
+        assignment.put(x, IntConst.of(-7));
+        assertEquals(IntConst.of(-4), Interpreter.eval(new Div(x, IntConst.of(2)), assignment).get());
+        assertEquals(IntConst.of(4), Interpreter.eval(new Div(x, IntConst.of(-2)), assignment).get());
+        assertEquals(BoolConst.TRUE, Interpreter.eval(new Less(x, new Minus(x)), assignment).get());
+        assertFalse(Interpreter.eval(new Div(x, IntConst.of(0)), assignment).isPresent());
+        assertFalse(Interpreter.eval(new Add(x, ProgramVariable.mkInt("y")), assignment).isPresent());
+    }
+
+    @Test
+    public void testBitVector() {
+        assertEquals(bv(255), eval(new BVUnsignedDiv(bv(5), bv(0))));
+        assertEquals(bv(5), eval(new BVUnsignedRemainder(bv(5), bv(0))));
+        assertEquals(bv(255), eval(new BVSignedDiv(bv(5), bv(0))));
+        assertEquals(bv(1), eval(new BVSignedDiv(bv(-5), bv(0))));
+        assertEquals(bv(254), eval(new BVSignedDiv(bv(-7), bv(3))));
+        assertEquals(bv(255), eval(new BVSignedRemainder(bv(-7), bv(3))));
+        assertEquals(bv(2), eval(new BVSignedModulo(bv(-7), bv(3))));
+        assertEquals(bv(254), eval(new BVSignedModulo(bv(7), bv(-3))));
+        assertEquals(bv(0), eval(new BVShiftLeft(bv(1), bv(8))));
+        assertEquals(bv(255), eval(new BVSignedShiftRight(bv(-128), bv(200))));
+        assertEquals(bv(192), eval(new BVSignedShiftRight(bv(-128), bv(1))));
+        assertEquals(bv(64), eval(new BVUnsignedShiftRight(bv(-128), bv(1))));
+        assertEquals(bv(0), eval(new BVAdd(bv(200), bv(56))));
+        assertEquals(BoolConst.TRUE, eval(new BVSignedLess(bv(-1), bv(0))));
+        assertEquals(BoolConst.FALSE, eval(new BVUnsignedLess(bv(-1), bv(0))));
+    }
+
+    @Test
+    public void testCheck() {
+        ProgramVariable x = ProgramVariable.mkBV("x", 8);
+        ProgramOutput output = new ProgramOutput(new BVType(8));
+        List<Node> clauses = new ArrayList<>();
+        clauses.add(new Equal(x, bv(3)));
+        clauses.add(new Equal(new BVMult(x, bv(2)), output));
+        clauses.add(new Equal(output, bv(6)));
+        assertEquals(Optional.of(true), Interpreter.check(clauses));
+
+        clauses.set(2, new Equal(output, bv(7)));
+        assertEquals(Optional.of(false), Interpreter.check(clauses));
+
+        clauses.remove(0);
+        assertEquals(Optional.empty(), Interpreter.check(clauses));
+    }
+
+}
@@ -0,0 +1,71 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.ProgramVariable;
+import sg.edu.nus.comp.codis.ast.Variable;
+import sg.edu.nus.comp.codis.ast.theory.IntConst;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestLazyModel {
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final ProgramVariable y = ProgramVariable.mkInt("y");
+    private final ProgramVariable z = ProgramVariable.mkInt("z");
+
+    private int evaluations = 0;
+
+    private LazyModel model() {
+        Set<Variable> domain = new HashSet<>();
+        domain.add(x);
+        domain.add(y);
+        return new LazyModel(domain, v -> {
+            evaluations++;
+            return IntConst.of(((ProgramVariable) v).getName().length());
+        });
+    }
+
+    @Test
+    public void testEvaluatesOnDemand() {
+        LazyModel model = model();
+        assertTrue(model.containsKey(x));
+        assertFalse(model.containsKey(z));
+        assertEquals(2, model.keySet().size());
+        assertEquals(0, evaluations);
+
+        assertEquals(IntConst.of(1), model.get(x));
+        assertEquals(IntConst.of(1), model.get(x));
+        assertNull(model.get(z));
+        assertEquals(1, evaluations);
+        assertEquals(1, model.getEvaluatedCount());
+    }
+
+    @Test
+    public void testInvalidation() {
+        LazyModel model = model();
+        model.get(x);
+        model.invalidate();
+        assertEquals(IntConst.of(1), model.get(x));
+        try {
+            model.get(y);
+            fail();
+        } catch (RuntimeException e) {
+            assertFalse(model.isValid());
+        }
+    }
+
+    @Test
+    public void testMaterialize() {
+        LazyModel model = model();
+        Map<Variable, Constant> copy = LazyModel.materialize(model);
+        assertEquals(2, evaluations);
+        model.invalidate();
+        assertEquals(IntConst.of(1), copy.get(y));
+        assertEquals(copy, model);
+    }
+}
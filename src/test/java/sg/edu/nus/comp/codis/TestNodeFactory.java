@@ -0,0 +1,39 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import static org.junit.Assert.*;
+
+public class TestNodeFactory {
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final ProgramVariable v = ProgramVariable.mkBV("v", 8);
+
+    @Test
+    public void testSharing() {
+        Node a = NodeFactory.internAll(new Add(new Mult(x, IntConst.of(2)), new Mult(x, IntConst.of(2))));
+        Node b = NodeFactory.internAll(new Add(new Mult(x, IntConst.of(2)), new Mult(x, IntConst.of(2))));
+        assertSame(a, b);
+        assertSame(((Add) a).getLeft(), ((Add) a).getRight());
+        assertSame(NodeFactory.intern(new Mult(x, IntConst.of(2))), ((Add) a).getLeft());
+    }
+
+    @Test
+    public void testNodeKinds() {
+        Node n = new BVSignedLess(new BVMult(v, v), v);
+        Node interned = NodeFactory.internAll(n);
+        assertEquals(n, interned);
+        assertTrue(interned instanceof BVSignedLess);
+        assertTrue(((BVSignedLess) interned).getLeft() instanceof BVMult);
+    }
+
+    @Test
+    public void testIdentityNodes() {
+        Selector s = new Selector();
+        assertSame(s, NodeFactory.intern(s));
+        assertNotSame(NodeFactory.intern(new Selector()), NodeFactory.intern(new Selector()));
+    }
+
+}
@@ -0,0 +1,66 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestNodeSummary {
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final Parameter p = Parameter.mkInt("p");
+    private final Hole h = new Hole("h", IntType.TYPE, Node.class);
+
+    @Test
+    public void testVariables() {
+        Node node = new ITE(new Greater(x, p), new Add(h, IntConst.of(1)), x);
+        NodeSummary summary = node.getSummary();
+        assertEquals(new HashSet<>(Arrays.asList(x, p, h)), summary.getVariables());
+        assertEquals(Collections.singleton(h), summary.getVariables(Hole.class));
+        assertEquals(Collections.singleton(x), summary.getVariables(ProgramVariable.class));
+        assertTrue(summary.hasVariables(Parameter.class));
+        assertFalse(summary.hasVariables(Selector.class));
+        assertEquals(8, summary.getSize());
+        assertEquals(3, summary.getDepth());
+        assertSame(summary, node.getSummary());
+        assertEquals(Traverse.collectByType(node, Hole.class), summary.getVariables(Hole.class));
+    }
+
+    @Test
+    public void testComponent() {
+        Component leaf = new Component(new Add(x, p));
+        Component function = new Component(new Mult(h, x));
+        assertTrue(leaf.isLeaf());
+        assertFalse(function.isLeaf());
+        assertEquals(Collections.singleton(h), function.getInputs());
+    }
+
+    @Test
+    public void testDeep() {
+        Node node = BoolConst.FALSE;
+        for (int i = 0; i < 100000; i++) {
+            node = new Or(node, new Greater(i % 2 == 0 ? x : p, IntConst.of(i)));
+        }
+        assertEquals(100002, node.getSummary().getDepth());
+        assertEquals(new HashSet<>(Arrays.asList(x, p)), node.getSummary().getVariables());
+        assertTrue(node.contains(p));
+        assertFalse(node.contains(h));
+    }
+
+    @Test
+    public void testChainOfDistinctVariables() {
+        int n = 20000;
+        Node node = BoolConst.FALSE;
+        for (int i = 0; i < n; i++) {
+            node = new Or(node, ProgramVariable.mkBool("b" + i));
+        }
+        // interior nodes keep no variables, so this is linear in the size of the chain
+        assertEquals(n, node.getSummary().getVariables().size());
+        assertEquals(n - 1, ((Or) node).getLeft().getSummary().getVariables().size());
+        assertEquals(2 * n + 1, node.getSummary().getSize());
+    }
+
+}
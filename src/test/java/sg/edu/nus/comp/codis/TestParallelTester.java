@@ -0,0 +1,132 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TestParallelTester {
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final ProgramVariable id = ProgramVariable.mkInt("id");
+
+    /**
+     * Tests with odd ids are unsatisfiable
+     */
+    private static class OddFailingSolver implements Solver {
+        private AtomicInteger queries;
+
+        OddFailingSolver(AtomicInteger queries) {
+            this.queries = queries;
+        }
+
+        @Override
+        public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+            queries.incrementAndGet();
+            for (Node clause : clauses) {
+                if (clause instanceof Equal && ((Equal) clause).getRight() instanceof IntConst) {
+                    if (((IntConst) ((Equal) clause).getRight()).getValue() % 2 == 1) {
+                        return Optional.empty();
+                    }
+                }
+            }
+            return Optional.of(new HashMap<>());
+        }
+    }
+
+    // not ground, so that the solver is used
+    private TestCase symbolicTest(int number) {
+        return new TestCase() {
+            @Override
+            public List<Node> getConstraints(Variable output) {
+                List<Node> clauses = new ArrayList<>();
+                clauses.add(new Equal(id, IntConst.of(number)));
+                clauses.add(new Greater(output, x));
+                return clauses;
+            }
+
+            @Override
+            public Type getOutputType() {
+                return IntType.TYPE;
+            }
+        };
+    }
+
+    @Test
+    public void testAllFailing() {
+        AtomicInteger queries = new AtomicInteger(0);
+        ParallelTester tester = new ParallelTester(() -> new OddFailingSolver(queries), 4, 3);
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            tests.add(symbolicTest(i));
+        }
+        int[] indices = new int[100];
+        for (int i = 0; i < 100; i++) {
+            indices[i] = i;
+        }
+        BitSet failing = new BitSet();
+        BitSet undecided = new BitSet();
+        tester.test(Program.leaf(new Component(x)), new HashMap<>(), tests, indices, failing, undecided, false);
+        tester.shutdown();
+        assertEquals(100, queries.get());
+        assertEquals(50, failing.cardinality());
+        assertTrue(failing.get(1));
+        assertFalse(failing.get(2));
+        assertTrue(undecided.isEmpty());
+    }
+
+    @Test
+    public void testFirstFailing() {
+        AtomicInteger queries = new AtomicInteger(0);
+        ParallelTester tester = new ParallelTester(() -> new OddFailingSolver(queries), 1, 1);
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            tests.add(symbolicTest(2 * i));
+        }
+        tests.add(3, symbolicTest(7));
+        BatchEvaluator evaluator = new BatchEvaluator(new TestStore(tests), new Tester(null));
+        evaluator.setParallelTester(tester);
+        BitSet candidates = new BitSet();
+        candidates.set(0, tests.size());
+        Optional<Integer> failing = evaluator.findFailing(Program.leaf(new Component(x)), new HashMap<>(), candidates, new BitSet());
+        tester.shutdown();
+        assertEquals(Optional.of(3), failing);
+        assertEquals(4, queries.get());
+    }
+
+    @Test
+    public void testTestersAreReused() {
+        AtomicInteger queries = new AtomicInteger(0);
+        AtomicInteger solvers = new AtomicInteger(0);
+        ParallelTester tester = new ParallelTester(() -> {
+            solvers.incrementAndGet();
+            return new OddFailingSolver(queries);
+        }, 2, 1);
+        List<TestCase> tests = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tests.add(symbolicTest(i));
+        }
+        int[] indices = new int[20];
+        for (int i = 0; i < 20; i++) {
+            indices[i] = i;
+        }
+        for (int run = 0; run < 50; run++) {
+            tester.test(Program.leaf(new Component(x)), new HashMap<>(), tests, indices, new BitSet(), new BitSet(), false);
+        }
+        tester.shutdown();
+        assertEquals(1000, queries.get());
+        // the calling thread can run chunks in addition to the workers
+        assertTrue(solvers.get() <= tester.getThreads() + 1);
+    }
+
+}
@@ -0,0 +1,54 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Backends of the pool factories must answer both kinds of queries
+ */
+public class TestPooledBackends {
+
+    private void checkBothQueries(SolverPool<?> pool) {
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        List<Node> clauses = new ArrayList<>();
+        clauses.add(new Greater(x, IntConst.of(0)));
+        List<Node> assumptions = new ArrayList<>();
+        assumptions.add(new Less(x, IntConst.of(0)));
+        try {
+            Either<Map<Variable, Constant>, List<Node>> core = pool.getModelOrCore(clauses, assumptions);
+            assertTrue(core.isRight());
+            assertEquals(assumptions, core.right().value());
+
+            List<Node> right = new ArrayList<>();
+            right.add(new Equal(x, IntConst.of(1)));
+            Either<Map<Variable, Constant>, Node> model = pool.getModelOrInterpolant(clauses, right);
+            assertTrue(model.isLeft());
+            assertEquals(IntConst.of(1), model.left().value().get(x));
+
+            assertTrue(pool.getModelOrInterpolant(clauses, assumptions).isRight());
+            assertTrue(pool.getModel(clauses).isPresent());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testZ3() {
+        checkBothQueries(SolverPool.ofZ3(1, 10, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testMathSAT() {
+        checkBothQueries(SolverPool.ofMathSAT(1, 10, Long.MAX_VALUE));
+    }
+
+}
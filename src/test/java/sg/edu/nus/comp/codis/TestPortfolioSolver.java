@@ -0,0 +1,184 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TestPortfolioSolver {
+
+    /**
+     * Polls the interrupt flag like the termination test of MathSAT
+     */
+    private static class SlowSolver implements Solver, Interruptible {
+        private volatile boolean interrupted = false;
+        private CountDownLatch started = new CountDownLatch(1);
+        private CountDownLatch stopped = new CountDownLatch(1);
+
+        @Override
+        public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+            started.countDown();
+            long deadline = System.currentTimeMillis() + 10000;
+            try {
+                while (!interrupted && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                stopped.countDown();
+            }
+            throw new RuntimeException("interrupted");
+        }
+
+        @Override
+        public void interrupt() {
+            interrupted = true;
+        }
+
+        @Override
+        public void resetInterrupt() {
+            interrupted = false;
+        }
+    }
+
+    /**
+     * Answers unless it is interrupted when its query starts
+     */
+    private static class CheckedSolver implements Solver, Interruptible {
+        private volatile boolean interrupted = false;
+
+        @Override
+        public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+            if (interrupted) {
+                throw new RuntimeException("interrupted");
+            }
+            return Optional.of(new HashMap<>());
+        }
+
+        @Override
+        public void interrupt() {
+            interrupted = true;
+        }
+
+        @Override
+        public void resetInterrupt() {
+            interrupted = false;
+        }
+    }
+
+    private static class FastSolver implements Solver {
+        @Override
+        public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+            return Either.right(new ArrayList<>());
+        }
+
+        @Override
+        public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+            return Optional.empty();
+        }
+    }
+
+    private static class UnknownSolver extends FastSolver {
+        @Override
+        public SolverResult<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses,
+                                                                                List<Node> assumptions,
+                                                                                SolverLimits limits) {
+            return SolverResult.unknown("timeout");
+        }
+    }
+
+    @Test
+    public void testLoserIsInterrupted() throws InterruptedException {
+        SlowSolver slow = new SlowSolver();
+        Map<String, Solver> solvers = new LinkedHashMap<>();
+        solvers.put("slow", slow);
+        // otherwise the slow query can be cancelled before it starts
+        solvers.put("fast", new FastSolver() {
+            @Override
+            public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+                try {
+                    slow.started.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.getModel(clauses);
+            }
+        });
+        PortfolioSolver portfolio = new PortfolioSolver(solvers, new HashMap<>());
+
+        assertFalse(portfolio.getModel(new ArrayList<>()).isPresent());
+        assertTrue(slow.stopped.await(10, TimeUnit.SECONDS));
+        assertTrue(slow.interrupted);
+        assertEquals(1.0, portfolio.getWinRates().get("fast"), 0.0001);
+        assertEquals(0.0, portfolio.getWinRates().get("slow"), 0.0001);
+        portfolio.shutdown();
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testAllFailed() {
+        Map<String, Solver> solvers = new LinkedHashMap<>();
+        solvers.put("failing", new FastSolver() {
+            @Override
+            public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+                throw new RuntimeException("failed");
+            }
+        });
+        PortfolioSolver portfolio = new PortfolioSolver(solvers, new HashMap<>());
+        portfolio.getModel(new ArrayList<>());
+    }
+
+    @Test
+    public void testStaleInterruptIsCleared() {
+        CheckedSolver checked = new CheckedSolver();
+        checked.interrupt();
+        Map<String, Solver> solvers = new LinkedHashMap<>();
+        solvers.put("checked", checked);
+        PortfolioSolver portfolio = new PortfolioSolver(solvers, new HashMap<>());
+        assertTrue(portfolio.getModel(new ArrayList<>()).isPresent());
+        portfolio.shutdown();
+    }
+
+    @Test
+    public void testUnknownDoesNotWin() {
+        Map<String, Solver> solvers = new LinkedHashMap<>();
+        solvers.put("unknown", new UnknownSolver());
+        solvers.put("fast", new FastSolver());
+        PortfolioSolver portfolio = new PortfolioSolver(solvers, new HashMap<>());
+        SolverResult<Map<Variable, Constant>, List<Node>> result =
+                portfolio.getModel(new ArrayList<>(), SolverLimits.timeout(100));
+        assertTrue(result.isUnsat());
+        assertEquals(1.0, portfolio.getWinRates().get("fast"), 0.0001);
+        portfolio.shutdown();
+    }
+
+    @Test
+    public void testAllUnknown() {
+        Map<String, Solver> solvers = new LinkedHashMap<>();
+        solvers.put("unknown", new UnknownSolver());
+        PortfolioSolver portfolio = new PortfolioSolver(solvers, new HashMap<>());
+        SolverResult<Map<Variable, Constant>, List<Node>> result =
+                portfolio.getModel(new ArrayList<>(), SolverLimits.timeout(100));
+        assertTrue(result.isUnknown());
+        assertEquals("timeout", result.getReason());
+        portfolio.shutdown();
+    }
+
+}
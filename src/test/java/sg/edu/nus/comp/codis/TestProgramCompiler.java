@@ -0,0 +1,123 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestProgramCompiler {
+
+    private final ProgramVariable x = ProgramVariable.mkBV("x", 8);
+    private final ProgramVariable y = ProgramVariable.mkBV("y", 8);
+    private final ProgramVariable b = ProgramVariable.mkBool("b");
+    private final ProgramVariable i = ProgramVariable.mkInt("i");
+
+    private final Node bvProgram = new ITE(b,
+            new BVSignedModulo(new BVMult(x, y), new BVNeg(y)),
+            new BVSignedShiftRight(new BVXnor(x, y), BVConst.ofLong(3, 8)));
+
+    private final Node intProgram = new ITE(new Less(i, IntConst.of(0)), new Div(i, IntConst.of(-3)), new Minus(i));
+
+    private void checkAgainstInterpreter(ProgramCompiler compiler) {
+        CompiledProgram bv = compiler.compile(bvProgram);
+        CompiledProgram integer = compiler.compile(intProgram);
+        for (long vx = 0; vx < 256; vx += 7) {
+            for (long vy = 0; vy < 256; vy += 5) {
+                for (boolean vb : new boolean[] { true, false }) {
+                    Map<ProgramVariable, Constant> assignment = new HashMap<>();
+                    assignment.put(x, BVConst.ofLong(vx, 8));
+                    assignment.put(y, BVConst.ofLong(vy, 8));
+                    assignment.put(b, BoolConst.of(vb));
+                    assertEquals(Interpreter.eval(bvProgram, assignment).get(), bv.apply(assignment));
+                }
+            }
+        }
+        for (int vi = -10; vi <= 10; vi++) {
+            Map<ProgramVariable, Constant> assignment = new HashMap<>();
+            assignment.put(i, IntConst.of(vi));
+            assertEquals(Interpreter.eval(intProgram, assignment).get(), integer.apply(assignment));
+        }
+    }
+
+    @Test
+    public void testBytecode() {
+        ProgramCompiler compiler = new ProgramCompiler();
+        checkAgainstInterpreter(compiler);
+        assertTrue(compiler.compile(bvProgram).isBytecode());
+        assertEquals(Arrays.asList(b, x, y), compiler.compile(bvProgram).getInputs());
+    }
+
+    @Test
+    public void testClosures() {
+        ProgramCompiler compiler = new ProgramCompiler();
+        compiler.setBytecode(false);
+        checkAgainstInterpreter(compiler);
+        assertFalse(compiler.compile(bvProgram).isBytecode());
+    }
+
+    private final ProgramVariable j = ProgramVariable.mkInt("j");
+
+    private List<Node> operators() {
+        return Arrays.asList(
+                new Add(i, j), new Sub(i, j), new Mult(i, j), new Div(i, j), new Minus(i),
+                new Greater(i, j), new Less(i, j), new GreaterOrEqual(i, j), new LessOrEqual(i, j), new Equal(i, j),
+                new And(new Less(i, j), b), new Or(new Less(i, j), b), new Iff(new Less(i, j), b),
+                new Impl(new Less(i, j), b), new Not(b),
+                new BVAdd(x, y), new BVSub(x, y), new BVMult(x, y), new BVNeg(x), new BVNot(x),
+                new BVAnd(x, y), new BVOr(x, y), new BVXor(x, y), new BVNand(x, y), new BVNor(x, y), new BVXnor(x, y),
+                new BVShiftLeft(x, y), new BVUnsignedShiftRight(x, y), new BVSignedShiftRight(x, y),
+                new BVUnsignedDiv(x, y), new BVUnsignedRemainder(x, y),
+                new BVSignedDiv(x, y), new BVSignedRemainder(x, y), new BVSignedModulo(x, y),
+                new BVUnsignedGreater(x, y), new BVUnsignedGreaterOrEqual(x, y),
+                new BVUnsignedLess(x, y), new BVUnsignedLessOrEqual(x, y),
+                new BVSignedGreater(x, y), new BVSignedGreaterOrEqual(x, y),
+                new BVSignedLess(x, y), new BVSignedLessOrEqual(x, y), new Equal(x, y));
+    }
+
+    private void checkOperators(ProgramCompiler compiler) {
+        int[] ints = { Integer.MIN_VALUE, -7, -3, -1, 0, 1, 2, 3, 7, Integer.MAX_VALUE };
+        long[] bvs = { 0, 1, 2, 3, 7, 8, 9, 100, 127, 128, 129, 200, 254, 255 };
+        for (Node operator : operators()) {
+            CompiledProgram program = compiler.compile(operator);
+            for (int k = 0; k < ints.length * bvs.length; k++) {
+                for (int l = 0; l < ints.length; l++) {
+                    Map<ProgramVariable, Constant> assignment = new HashMap<>();
+                    assignment.put(i, IntConst.of(ints[k % ints.length]));
+                    assignment.put(j, IntConst.of(ints[l]));
+                    assignment.put(x, BVConst.ofLong(bvs[k / ints.length], 8));
+                    assignment.put(y, BVConst.ofLong(bvs[(k + l) % bvs.length], 8));
+                    assignment.put(b, BoolConst.of(l % 2 == 0));
+                    Optional<Constant> expected = Interpreter.eval(operator, assignment);
+                    if (expected.isPresent()) {
+                        assertEquals(operator + " on " + assignment, expected.get(), program.apply(assignment));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOperatorsBytecode() {
+        checkOperators(new ProgramCompiler());
+    }
+
+    @Test
+    public void testOperatorsClosures() {
+        ProgramCompiler compiler = new ProgramCompiler();
+        compiler.setBytecode(false);
+        checkOperators(compiler);
+    }
+
+    @Test
+    public void testCache() {
+        ProgramCompiler compiler = new ProgramCompiler();
+        compiler.setBytecode(false);
+        CompiledProgram first = compiler.compile(new BVAdd(x, BVConst.ofLong(1, 8)));
+        assertSame(first, compiler.compile(new BVAdd(x, BVConst.ofLong(1, 8))));
+        assertEquals(1, compiler.getCacheSize());
+    }
+
+}
@@ -0,0 +1,114 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestQueryRecorder {
+
+    private static class UnsatSolver implements Solver, InterpolatingSolver {
+        @Override
+        public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+            return Either.right(assumptions);
+        }
+
+        @Override
+        public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses) {
+            return Either.left(new HashMap<>());
+        }
+    }
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final ProgramVariable b = ProgramVariable.mkBV("b", 8);
+
+    private List<Path> files(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    private void delete(Path directory) throws IOException {
+        for (Path file : files(directory)) {
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testPrintAndParse() {
+        Node node = new And(new Equal(x, new Add(IntConst.of(-3), x)),
+                            new BVSignedLess(new BVAdd(b, BVConst.ofLong(-1, 8)), BVConst.ofLong(5, 8)));
+        VariableMarshaller marshaller = new VariableMarshaller();
+        String printed = SmtLib.print(node, marshaller);
+        assertEquals("(and (= v1 (+ (- 3) v1)) (bvslt (bvadd v2 (_ bv255 8)) (_ bv5 8)))", printed);
+
+        Map<String, Node> scope = new HashMap<>();
+        for (Variable variable : marshaller.getVariables()) {
+            scope.put(marshaller.toString(variable), new ProgramVariable(marshaller.toString(variable), variable.getType()));
+        }
+        Node parsed = SmtLib.parse(SmtLib.read(printed).get(0), scope, new HashMap<>());
+        assertEquals(printed, SmtLib.print(parsed, new VariableMarshaller()));
+    }
+
+    @Test
+    public void testRecordAndRead() throws IOException {
+        Path directory = Files.createTempDirectory("queries");
+        try {
+            QueryRecorder recorder = new QueryRecorder(directory, "test", 2, 100);
+            RecordingSolver solver = new RecordingSolver((Solver) new UnsatSolver(), "fake", recorder);
+            RecordingSolver iSolver = new RecordingSolver((InterpolatingSolver) new UnsatSolver(), "fake", recorder);
+
+            List<Node> clauses = Collections.singletonList(new Greater(x, IntConst.of(0)));
+            List<Node> assumptions = Collections.singletonList(new Less(x, IntConst.of(0)));
+            solver.getModelOrCore(clauses, assumptions);
+            solver.getModel(clauses);
+            iSolver.getModelOrInterpolant(clauses, assumptions);
+            recorder.close();
+
+            assertEquals(3, recorder.getRecordedCount());
+            List<Path> files = files(directory);
+            assertEquals(2, files.size());
+
+            List<QueryReplay.RecordedQuery> queries = new ArrayList<>();
+            for (Path file : files) {
+                queries.addAll(QueryReplay.read(file));
+            }
+            assertEquals(3, queries.size());
+
+            QueryReplay.RecordedQuery first = queries.get(0);
+            assertEquals(QueryRecorder.Kind.CHECK, first.getKind());
+            assertEquals("unsat", first.getStatus());
+            assertEquals("fake", first.getBackend());
+            assertEquals(1, first.getFirst().size());
+            assertEquals(1, first.getSecond().size());
+            assertTrue(first.getSecond().get(0) instanceof Less);
+
+            assertTrue(queries.get(1).getSecond().isEmpty());
+
+            QueryReplay.RecordedQuery third = queries.get(2);
+            assertEquals(QueryRecorder.Kind.INTERPOLATE, third.getKind());
+            assertEquals("sat", third.getStatus());
+            assertTrue(third.getFirst().get(0) instanceof Greater);
+            assertTrue(third.getSecond().get(0) instanceof Less);
+        } finally {
+            delete(directory);
+        }
+    }
+}
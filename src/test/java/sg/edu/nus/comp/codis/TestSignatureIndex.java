@@ -0,0 +1,70 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestSignatureIndex {
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+
+    private TestCase test(int input, int output) {
+        Map<ProgramVariable, Node> assignment = new HashMap<>();
+        assignment.put(x, IntConst.of(input));
+        return TestCase.ofAssignment(assignment, IntConst.of(output));
+    }
+
+    private Program program(Node semantics) {
+        return Program.leaf(new Component(semantics));
+    }
+
+    @Test
+    public void testEquivalentOnTests() {
+        SignatureIndex index = new SignatureIndex(Arrays.asList(test(0, 0), test(2, 4)));
+        Map<Parameter, Constant> noParameters = new HashMap<>();
+        assertTrue(index.add(program(new Add(x, x)), noParameters));
+        // x * x agrees with x + x on 0 and 2
+        assertFalse(index.add(program(new Mult(x, x)), noParameters));
+        assertTrue(index.add(program(new Mult(x, IntConst.of(3))), noParameters));
+
+        index.addTests(Collections.singletonList(test(3, 6)));
+        assertTrue(index.add(program(new Mult(x, x)), noParameters));
+        assertFalse(index.add(program(new Mult(IntConst.of(2), x)), noParameters));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void testParameters() {
+        SignatureIndex index = new SignatureIndex(Arrays.asList(test(1, 2), test(5, 6)));
+        Parameter p = Parameter.mkInt("p");
+        Program program = program(new Add(x, p));
+        Map<Parameter, Constant> one = new HashMap<>();
+        one.put(p, IntConst.of(1));
+        Map<Parameter, Constant> two = new HashMap<>();
+        two.put(p, IntConst.of(2));
+        assertTrue(index.add(program, one));
+        assertTrue(index.add(program, two));
+        assertTrue(index.contains(program(new Add(IntConst.of(1), x)), new HashMap<>()));
+    }
+
+    @Test
+    public void testSignatureCollision() {
+        SignatureIndex index = new SignatureIndex(Arrays.asList(test(0, 0), test(2, 4))) {
+            @Override
+            public Optional<Long> getSignature(Program program, Map<Parameter, Constant> parameterValuation) {
+                return Optional.of(0L);
+            }
+        };
+        Map<Parameter, Constant> noParameters = new HashMap<>();
+        assertTrue(index.add(program(new Add(x, x)), noParameters));
+        assertTrue(index.add(program(new Add(x, IntConst.of(1))), noParameters));
+        assertFalse(index.add(program(new Mult(x, x)), noParameters));
+        assertFalse(index.contains(program(new Sub(x, x)), noParameters));
+        assertEquals(2, index.size());
+    }
+
+}
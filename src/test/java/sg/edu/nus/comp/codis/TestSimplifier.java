@@ -4,6 +4,8 @@ import org.junit.Test;
 import sg.edu.nus.comp.codis.ast.*;
 import sg.edu.nus.comp.codis.ast.theory.*;
 
+import java.util.*;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -53,5 +55,45 @@ public class TestSimplifier {
         assertEquals(new Sub(a, b), s);
     }
 
+    @Test
+    public void testDivision() {
+        assertEquals(IntConst.of(-4), Simplifier.simplify(new Div(IntConst.of(-7), IntConst.of(2))));
+        assertEquals(IntConst.of(4), Simplifier.simplify(new Div(IntConst.of(-7), IntConst.of(-2))));
+        Node n = new Div(IntConst.of(1), IntConst.of(0));
+        assertEquals(n, Simplifier.simplify(n));
+    }
+
+    @Test
+    public void testOverflow() {
+        Node n = new Add(IntConst.of(Integer.MAX_VALUE), IntConst.of(1));
+        assertEquals(n, Simplifier.simplify(n));
+        assertEquals(BoolConst.TRUE, Simplifier.simplify(new Impl(new Greater(IntConst.of(1), IntConst.of(2)), new Greater(n, IntConst.of(0)))));
+    }
+
+    @Test
+    public void testGroundBitVectorsAndEquality() {
+        Node sum = new BVAdd(BVConst.ofLong(250, 8), BVConst.ofLong(10, 8));
+        assertEquals(BVConst.ofLong(4, 8), Simplifier.simplify(sum));
+        assertEquals(BoolConst.TRUE, Simplifier.simplify(new Equal(sum, BVConst.ofLong(4, 8))));
+        ProgramVariable a = ProgramVariable.mkBool("a");
+        assertEquals(BoolConst.FALSE, Simplifier.simplify(new And(a, new Equal(IntConst.of(1), IntConst.of(2)))));
+    }
+
+    @Test
+    public void testPartialEvaluationShrinksClauses() {
+        ProgramVariable x = ProgramVariable.mkBV("x", 8);
+        ProgramVariable o = ProgramVariable.mkBV("o", 8);
+        Selector s1 = new Selector();
+        Selector s2 = new Selector();
+        Selector s3 = new Selector();
+        List<Node> clauses = new ArrayList<>();
+        clauses.add(new Impl(s1, new Equal(o, x)));
+        clauses.add(new Impl(s2, new Equal(new BVAnd(x, BVConst.ofLong(3, 8)), BVConst.ofLong(1, 8))));
+        clauses.add(new Or(new Not(s3), new Equal(x, BVConst.ofLong(5, 8))));
+        Map<ProgramVariable, Node> assignment = new HashMap<>();
+        assignment.put(x, BVConst.ofLong(5, 8));
+        TestCase test = TestCase.ofAssignment(assignment, BVConst.ofLong(5, 8));
+        assertEquals(1, TreeBoundedSynthesis.partiallyEvaluate(clauses, test).size());
+    }
 
 }
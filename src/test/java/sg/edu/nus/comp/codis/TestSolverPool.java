@@ -0,0 +1,92 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.Constant;
+import sg.edu.nus.comp.codis.ast.Node;
+import sg.edu.nus.comp.codis.ast.Variable;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TestSolverPool {
+
+    private static class Backend implements Solver, InterpolatingSolver {
+        private AtomicBoolean busy = new AtomicBoolean(false);
+        private boolean disposed = false;
+
+        @Override
+        public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Either<Map<Variable, Constant>, Node> getModelOrInterpolant(List<Node> leftClauses, List<Node> rightClauses) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Test
+    public void testRecycling() {
+        List<Backend> disposed = new ArrayList<>();
+        SolverPool<Backend> pool = new SolverPool<>(Backend::new, b -> { b.disposed = true; disposed.add(b); },
+                1, 2, Long.MAX_VALUE);
+        Backend first = pool.lease();
+        pool.release(first);
+        assertSame(first, pool.lease());
+        pool.release(first);
+        assertTrue(first.disposed);
+        Backend second = pool.lease();
+        assertNotSame(first, second);
+        pool.release(second);
+        assertEquals(2, pool.getCreatedCount());
+        assertEquals(1, pool.getRecycledCount());
+    }
+
+    @Test
+    public void testWarmUpAndEviction() throws InterruptedException {
+        SolverPool<Backend> pool = new SolverPool<>(Backend::new, b -> b.disposed = true, 4, 100, 0);
+        pool.warmUp(3);
+        assertEquals(3, pool.getCreatedCount());
+        Thread.sleep(5);
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(3, pool.getEvictedCount());
+    }
+
+    @Test
+    public void testExclusiveLeases() throws InterruptedException {
+        SolverPool<Backend> pool = new SolverPool<>(Backend::new, b -> b.disposed = true, 3, 10, Long.MAX_VALUE);
+        AtomicInteger violations = new AtomicInteger(0);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 200; j++) {
+                    pool.apply(b -> {
+                        if (!b.busy.compareAndSet(false, true) || b.disposed) {
+                            violations.incrementAndGet();
+                        }
+                        b.busy.set(false);
+                        return null;
+                    });
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, violations.get());
+        assertEquals(0, pool.getLeasedCount());
+        assertTrue(pool.getIdleCount() <= 3);
+    }
+
+}
@@ -0,0 +1,74 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestSolverSession {
+
+    private static IncrementalSolver solver;
+
+    @BeforeClass
+    public static void initSolver() {
+        solver = (IncrementalSolver) Z3.buildSolver();
+    }
+
+    @Test
+    public void testPushPop() {
+        SolverSession session = solver.openSession();
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        session.add(Collections.singletonList(new Greater(x, IntConst.of(0))));
+
+        session.push();
+        session.add(Collections.singletonList(new Less(x, IntConst.of(0))));
+        assertFalse(session.getModel().isPresent());
+        session.pop();
+
+        session.push();
+        session.add(Collections.singletonList(new Equal(x, IntConst.of(3))));
+        Optional<Map<Variable, Constant>> model = session.getModel();
+        assertTrue(model.isPresent());
+        assertEquals(IntConst.of(3), model.get().get(x));
+        session.pop();
+
+        assertTrue(session.getModel().isPresent());
+        session.dispose();
+    }
+
+    @Test
+    public void testAssumptions() {
+        SolverSession session = solver.openSession();
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable a = ProgramVariable.mkBool("a");
+        ProgramVariable b = ProgramVariable.mkBool("b");
+        List<Node> clauses = new ArrayList<>();
+        clauses.add(new Impl(a, new Equal(x, IntConst.of(1))));
+        clauses.add(new Impl(b, new Equal(x, IntConst.of(2))));
+        session.add(clauses);
+
+        List<Node> assumptions = new ArrayList<>();
+        assumptions.add(a);
+        assumptions.add(b);
+        Either<Map<Variable, Constant>, List<Node>> result = session.getModelOrCore(assumptions);
+        assertTrue(result.isRight());
+        assertEquals(2, result.right().value().size());
+
+        result = session.getModelOrCore(Collections.singletonList(b));
+        assertTrue(result.isLeft());
+        assertEquals(IntConst.of(2), result.left().value().get(x));
+        session.dispose();
+    }
+
+}
@@ -0,0 +1,148 @@
+package sg.edu.nus.comp.codis;
+
+import fj.data.Either;
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class TestTester {
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final ProgramVariable y = ProgramVariable.mkInt("y");
+
+    private static class CountingSessions implements Solver, IncrementalSolver {
+        private int opened = 0;
+        private int disposed = 0;
+        private SolverResult<Map<Variable, Constant>, List<Node>> answer = SolverResult.sat(new HashMap<>());
+
+        @Override
+        public Either<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> clauses, List<Node> assumptions) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<Map<Variable, Constant>> getModel(List<Node> clauses) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SolverSession openSession() {
+            opened++;
+            return new SolverSession() {
+                @Override
+                public void add(List<Node> clauses) {
+                }
+
+                @Override
+                public void push() {
+                }
+
+                @Override
+                public void pop() {
+                }
+
+                @Override
+                public SolverResult<Map<Variable, Constant>, List<Node>> getModelOrCore(List<Node> assumptions,
+                                                                                        SolverLimits limits) {
+                    return answer;
+                }
+
+                @Override
+                public void dispose() {
+                    disposed++;
+                }
+            };
+        }
+    }
+
+    private TestCase symbolic() {
+        return new TestCase() {
+            @Override
+            public List<Node> getConstraints(Variable output) {
+                List<Node> clauses = new ArrayList<>();
+                clauses.add(new Greater(output, y));
+                return clauses;
+            }
+
+            @Override
+            public Type getOutputType() {
+                return IntType.TYPE;
+            }
+        };
+    }
+
+    @Test
+    public void testDispose() {
+        CountingSessions solver = new CountingSessions();
+        Tester tester = new Tester(solver);
+        TestCase symbolic = symbolic();
+        Program program = Program.leaf(new Component(x));
+        assertTrue(tester.isPassing(program, new HashMap<>(), symbolic));
+        assertTrue(tester.isPassing(program, new HashMap<>(), symbolic));
+        tester.dispose();
+        assertEquals(1, solver.opened);
+        assertEquals(1, solver.disposed);
+        assertTrue(tester.isPassing(program, new HashMap<>(), symbolic));
+        tester.dispose();
+        assertEquals(2, solver.disposed);
+    }
+
+    @Test
+    public void testUnknownIsUndecided() {
+        CountingSessions solver = new CountingSessions();
+        solver.answer = SolverResult.unknown("timeout");
+        Tester tester = new Tester(solver);
+        tester.setLimits(SolverLimits.timeout(100));
+        Program program = Program.leaf(new Component(x));
+        assertFalse(tester.test(program, new HashMap<>(), symbolic()).isPresent());
+        assertFalse(tester.isPassing(program, new HashMap<>(), symbolic()));
+        assertEquals(1, solver.opened);
+        tester.dispose();
+    }
+
+    private TestCase test(Node xValue, Node output) {
+        Map<ProgramVariable, Node> assignment = new HashMap<>();
+        assignment.put(x, xValue);
+        return TestCase.ofAssignment(assignment, output);
+    }
+
+    @Test
+    public void testKind() {
+        assertEquals(TestCase.Kind.CONCRETE, test(IntConst.of(1), IntConst.of(2)).getKind());
+        assertEquals(TestCase.Kind.PARTIAL, test(y, IntConst.of(2)).getKind());
+        assertEquals(TestCase.Kind.PARTIAL, test(IntConst.of(1), new Add(y, IntConst.of(1))).getKind());
+    }
+
+    @Test
+    public void testConcreteWithoutSolver() {
+        Tester tester = new Tester(null);
+        Component plus = new Component(new Add(new Hole("a", IntType.TYPE, Component.class), IntConst.of(1)));
+        Program program = Program.app(plus, new HashMap<Hole, Program>() {{
+            put((Hole) ((Add) plus.getSemantics()).getLeft(), Program.leaf(new Component(x)));
+        }});
+        assertTrue(tester.isPassing(program, new HashMap<>(), test(IntConst.of(1), IntConst.of(2))));
+        assertFalse(tester.isPassing(program, new HashMap<>(), test(IntConst.of(1), IntConst.of(3))));
+        assertEquals(2, tester.getChecks());
+        assertEquals(0, tester.getSolverChecks());
+        assertEquals(1.0, tester.getSolverFreeRatio(), 0);
+    }
+
+    @Test
+    public void testNegativeBVOutput() {
+        ProgramVariable v = ProgramVariable.mkBV("v", 8);
+        Map<ProgramVariable, Node> assignment = new HashMap<>();
+        assignment.put(v, BVConst.ofLong(-1, 8));
+        TestCase test = TestCase.ofAssignment(assignment, BVConst.ofLong(-1, 8));
+        Tester tester = new Tester(null);
+        Program identity = Program.leaf(new Component(v));
+        assertTrue(tester.isPassing(identity, new HashMap<>(), test));
+        BatchEvaluator evaluator = new BatchEvaluator(new TestStore(Collections.singletonList(test)), tester);
+        assertTrue(evaluator.getFailing(identity, new HashMap<>()).isEmpty());
+        assertEquals(TestCase.ofAssignment(Collections.singletonMap(v, BVConst.ofLong(255, 8)),
+                                           BVConst.ofLong(255, 8)), test);
+    }
+}
@@ -0,0 +1,64 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import static org.junit.Assert.*;
+
+public class TestTranslationCache {
+
+    @Test
+    public void testStructuralHits() {
+        TranslationCache<String> cache = new TranslationCache<>(10);
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        cache.put(new Add(x, IntConst.of(1)), "term");
+        assertEquals("term", cache.get(new Add(x, IntConst.of(1))));
+        assertNull(cache.get(new Add(x, IntConst.of(2))));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testEviction() {
+        TranslationCache<Integer> cache = new TranslationCache<>(2);
+        cache.put(IntConst.of(1), 1);
+        cache.put(IntConst.of(2), 2);
+        cache.get(IntConst.of(1));
+        cache.put(IntConst.of(3), 3);
+        assertEquals(2, cache.size());
+        assertNull(cache.get(IntConst.of(2)));
+        assertEquals(Integer.valueOf(1), cache.get(IntConst.of(1)));
+    }
+
+    @Test
+    public void testNamesAreNotReused() {
+        TranslationCache<Integer> cache = new TranslationCache<>(1);
+        VariableMarshaller marshaller = cache.getMarshaller();
+        String first = marshaller.toString(ProgramVariable.mkInt("x"));
+        marshaller.toString(ProgramVariable.mkInt("y"));
+        assertTrue(cache.isFull());
+        cache.clear();
+        assertFalse(cache.isFull());
+        assertNotEquals(first, marshaller.toString(ProgramVariable.mkInt("x")));
+    }
+
+    @Test
+    public void testConstantsById() {
+        TranslationCache<String> cache = new TranslationCache<>(10);
+        VariableMarshaller marshaller = cache.getMarshaller();
+        ProgramVariable x = ProgramVariable.mkInt("x");
+        ProgramVariable y = ProgramVariable.mkBool("y");
+        assertEquals(0, marshaller.getId(x));
+        assertEquals(1, marshaller.getId(y));
+        assertEquals(0, marshaller.getId(x));
+        assertEquals(y, marshaller.toVariable(marshaller.toString(1)));
+        assertNull(cache.getConstant(0));
+        cache.putConstant(0, "x");
+        assertEquals("x", cache.getConstant(marshaller.getId(x)));
+        cache.clear();
+        assertNull(cache.getConstant(0));
+    }
+
+}
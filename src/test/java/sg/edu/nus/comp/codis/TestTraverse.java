@@ -0,0 +1,114 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TestTraverse {
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final ProgramVariable y = ProgramVariable.mkInt("y");
+    private final ProgramVariable b = ProgramVariable.mkBool("b");
+    private final ProgramVariable v = ProgramVariable.mkBV("v", 8);
+
+    @Test
+    public void testRebuild() {
+        Map<ProgramVariable, Node> mapping = new HashMap<>();
+        mapping.put(v, BVConst.ofLong(1, 8));
+        Node[] nodes = {
+                new BVMult(v, v),
+                new BVSignedLess(v, BVConst.ofLong(2, 8)),
+                new BVSub(new BVNeg(v), v),
+                new ITE(new BVUnsignedLess(v, v), v, new BVShiftLeft(v, v))
+        };
+        for (Node node : nodes) {
+            Node substituted = Traverse.substitute(node, mapping);
+            assertEquals(node.getClass(), substituted.getClass());
+            assertSame(node, Traverse.substitute(node, Collections.singletonMap(ProgramVariable.mkBV("w", 8), v)));
+            assertFalse(substituted.contains(v));
+        }
+    }
+
+    @Test
+    public void testSharing() {
+        Node shared = new Add(x, IntConst.of(1));
+        Node node = new ITE(b, new Mult(shared, shared), new Sub(y, shared));
+        assertSame(node, Traverse.transform(node, n -> n));
+
+        AtomicInteger calls = new AtomicInteger(0);
+        Node substituted = Traverse.transform(node, n -> {
+            calls.incrementAndGet();
+            return n.equals(x) ? y : n;
+        });
+        // b, x, 1, shared, mult, y, sub, ite
+        assertEquals(8, calls.get());
+        ITE ite = (ITE) substituted;
+        assertSame(b, ite.getCondition());
+        assertSame(((Mult) ite.getThenBranch()).getLeft(), ((Sub) ite.getElseBranch()).getRight());
+        assertEquals(new Add(y, IntConst.of(1)), ((Sub) ite.getElseBranch()).getRight());
+    }
+
+    @Test
+    public void testDeepChain() {
+        Node node = BoolConst.FALSE;
+        for (int i = 0; i < 100000; i++) {
+            node = new Or(node, new Greater(x, IntConst.of(i)));
+        }
+        assertSame(node, Traverse.transform(node, n -> n));
+        Node substituted = Traverse.substitute(node, Collections.singletonMap(x, y));
+        Node current = substituted;
+        int depth = 0;
+        while (current instanceof Or) {
+            assertEquals(y, ((Greater) ((Or) current).getRight()).getLeft());
+            current = ((Or) current).getLeft();
+            depth++;
+        }
+        assertEquals(100000, depth);
+    }
+
+    @Test
+    public void testSearch() {
+        Node node = new ITE(b, new Add(x, IntConst.of(1)), new Minus(new Mult(y, x)));
+        assertTrue(node.contains(new Add(x, IntConst.of(1))));
+        assertTrue(node.contains(y));
+        assertFalse(node.contains(new Add(y, IntConst.of(1))));
+        assertEquals(Optional.of(x), node.findFirst(n -> n instanceof ProgramVariable && !n.equals(b)));
+        assertEquals(Optional.empty(), node.findFirst(n -> n instanceof Parameter));
+        assertTrue(node.allMatch(n -> !(n instanceof Hole)));
+        assertFalse(node.allMatch(n -> !(n instanceof Minus)));
+
+        AtomicInteger calls = new AtomicInteger(0);
+        assertTrue(node.anyMatch(n -> calls.incrementAndGet() > 0 && n.equals(x)));
+        // ite, b, add, x
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    public void testConcurrentSearch() throws InterruptedException {
+        Node withX = new Add(x, IntConst.of(1));
+        Node withoutX = new Add(y, IntConst.of(1));
+        AtomicInteger errors = new AtomicInteger(0);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    if (!withX.contains(x) || withoutX.contains(x)) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, errors.get());
+    }
+
+}
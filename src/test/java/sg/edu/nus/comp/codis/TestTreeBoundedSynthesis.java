@@ -57,6 +57,33 @@ public class TestTreeBoundedSynthesis {
         assertTrue(node.equals(new Add(x, y)) || node.equals(new Add(y, x)));
     }
 
+    @Test
+    public void testTemplateInstantiation() {
+        TreeBoundedSynthesis templateSynthesizer = new TreeBoundedSynthesis(Z3.buildInterpolatingSolver(), 2, false);
+        templateSynthesizer.setTemplateInstantiation(true);
+
+        Multiset<Node> components = HashMultiset.create();
+        components.add(x);
+        components.add(y);
+        components.add(Components.ADD);
+
+        ArrayList<TestCase> testSuite = new ArrayList<>();
+        Map<ProgramVariable, Node> assignment1 = new HashMap<>();
+        assignment1.put(x, IntConst.of(1));
+        assignment1.put(y, IntConst.of(1));
+        testSuite.add(TestCase.ofAssignment(assignment1, IntConst.of(2)));
+
+        Map<ProgramVariable, Node> assignment2 = new HashMap<>();
+        assignment2.put(x, IntConst.of(1));
+        assignment2.put(y, IntConst.of(2));
+        testSuite.add(TestCase.ofAssignment(assignment2, IntConst.of(3)));
+
+        Optional<Pair<Program, Map<Parameter, Constant>>> result = templateSynthesizer.synthesize(testSuite, components);
+        assertTrue(result.isPresent());
+        Node node = result.get().getLeft().getSemantics(result.get().getRight());
+        assertTrue(node.equals(new Add(x, y)) || node.equals(new Add(y, x)));
+    }
+
     @Test
     public void testForbiddenChoice() {
 
@@ -0,0 +1,39 @@
+package sg.edu.nus.comp.codis;
+
+import org.junit.Test;
+import sg.edu.nus.comp.codis.ast.*;
+import sg.edu.nus.comp.codis.ast.theory.*;
+
+import static org.junit.Assert.*;
+
+public class TestTypeInference {
+
+    private final ProgramVariable x = ProgramVariable.mkInt("x");
+    private final ProgramVariable b = ProgramVariable.mkBool("b");
+    private final ProgramVariable v = ProgramVariable.mkBV("v", 16);
+
+    @Test
+    public void testAgreesWithCheck() throws TypeInferenceException {
+        Node[] nodes = {
+                new ITE(b, new Add(x, IntConst.of(1)), new Minus(x)),
+                new And(b, new Greater(x, IntConst.of(0))),
+                new BVMult(v, BVConst.ofLong(3, 16)),
+                new BVSignedLess(new BVNeg(v), v),
+                new ITE(new BVUnsignedLess(v, v), new BVShiftLeft(v, v), v),
+                new Equal(v, BVConst.ofLong(0, 16)),
+                new Hole("h", new BVType(16), Node.class)
+        };
+        for (Node node : nodes) {
+            assertEquals(TypeInference.checkType(node), TypeInference.typeOf(node));
+            assertEquals(TypeInference.checkType(node), TypeInference.typeOf(node));
+        }
+    }
+
+    @Test(expected = TypeInferenceException.class)
+    public void testCheckType() throws TypeInferenceException {
+        Node node = new Add(x, b);
+        assertEquals(IntType.TYPE, TypeInference.typeOf(node));
+        TypeInference.checkType(node);
+    }
+
+}